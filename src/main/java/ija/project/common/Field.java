@@ -114,6 +114,13 @@ public interface Field extends Observable {
      */
     int getCol();
 
+    /**
+     * Returns the cell id of the field in its maze.
+     *
+     * @return cell id of the field, see {@link Maze#cellId(int, int)}
+     */
+    int getCellId();
+
     /**
      * Check if the field has point.
      *
@@ -1,6 +1,7 @@
 package ija.project.common;
 
 import ija.project.game.GameException;
+import ija.project.game.GhostPopulation;
 
 import java.util.List;
 import java.util.Set;
@@ -10,6 +11,18 @@ import java.util.Set;
  * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
  */
 public interface Maze {
+    /**
+     * Listener notified when a cell of the maze becomes passable or impassable.
+     */
+    interface TerrainListener {
+        /**
+         * Called after the passability of a cell changed and exits of the cell and its neighbours were updated.
+         *
+         * @param maze maze that changed
+         * @param cell cell id of the changed cell
+         */
+        void terrainChanged(Maze maze, int cell);
+    }
 
     /**
      * Associates ghsots with the maze.
@@ -34,6 +47,80 @@ public interface Maze {
      */
     Field getField(int row, int col);
 
+    /**
+     * Returns a field with a given cell id.
+     *
+     * @param cell cell id, see {@link Maze#cellId(int, int)}
+     * @return Field with the given cell id
+     */
+    Field getField(int cell);
+
+    /**
+     * Returns cell id of a given position. Cell ids are numbered row by row from 0 to {@link Maze#numCells()} - 1.
+     *
+     * @param row row of the cell
+     * @param col column of the cell
+     * @return cell id or -1 if the position is outside the maze
+     */
+    int cellId(int row, int col);
+
+    /**
+     * Returns row of a given cell.
+     *
+     * @param cell cell id
+     * @return row of the cell
+     */
+    int cellRow(int cell);
+
+    /**
+     * Returns column of a given cell.
+     *
+     * @param cell cell id
+     * @return column of the cell
+     */
+    int cellCol(int cell);
+
+    /**
+     * Returns number of cells in the maze.
+     *
+     * @return number of cells
+     */
+    int numCells();
+
+    /**
+     * Checks whether a given cell can be passed through.
+     *
+     * @param cell cell id
+     * @return true if the cell is not a wall, false otherwise
+     */
+    boolean isPassable(int cell);
+
+    /**
+     * Returns id of the neighbouring cell in the given direction.
+     *
+     * @param cell cell id
+     * @param dir  direction
+     * @return id of the neighbouring cell or -1 if it is outside the maze
+     */
+    int neighbour(int cell, Field.Direction dir);
+
+    /**
+     * Checks whether the neighbouring cell in the given direction can be entered.
+     *
+     * @param cell cell id
+     * @param dir  direction
+     * @return true if the neighbour is passable, false otherwise
+     */
+    boolean canMove(int cell, Field.Direction dir);
+
+    /**
+     * Returns bitmask of passable neighbours of the cell.
+     *
+     * @param cell cell id
+     * @return bitmask where bit {@code 1 << dir.ordinal()} is set for every passable direction
+     */
+    int exits(int cell);
+
     /**
      * Swaps old field in maze for new.
      * @param oldF field to replace
@@ -48,6 +135,36 @@ public interface Maze {
      */
     List<MazeObject> getGhosts();
 
+    /**
+     * Returns a ghost by its id.
+     *
+     * @param id id of the ghost
+     * @return ghost with the given id
+     */
+    MazeObject getGhost(int id);
+
+    /**
+     * Returns number of ghosts in the maze.
+     *
+     * @return number of ghosts
+     */
+    int ghostCount();
+
+    /**
+     * Returns the population holding the state of all ghosts in the maze.
+     *
+     * @return population of the ghosts
+     */
+    GhostPopulation getGhostPopulation();
+
+    /**
+     * Finds ghosts colliding with pacman, including ghosts that swapped cells with pacman.
+     *
+     * @param out array for ids of colliding ghosts, at least {@link #ghostCount()} long
+     * @return number of ids written to {@code out}
+     */
+    int collectCollisions(int[] out);
+
     /**
      * Returns pacman in the maze.
      *
@@ -69,6 +186,54 @@ public interface Maze {
      */
     int numCols();
 
+    /**
+     * Returns number of points that were not collected yet.
+     *
+     * @return number of remaining points
+     */
+    int pelletsRemaining();
+
+    /**
+     * Checks whether any point remains in the rectangular region.
+     *
+     * @param row0 first row of the region
+     * @param col0 first column of the region
+     * @param row1 last row of the region, inclusive
+     * @param col1 last column of the region, inclusive
+     * @return true if the region contains a point, false otherwise
+     */
+    boolean anyPelletIn(int row0, int col0, int row1, int col1);
+
+    /**
+     * Checks whether one cell can be reached from another one.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return true if there is a path between the cells, false otherwise
+     */
+    boolean isReachable(int from, int to);
+
+    /**
+     * Returns version of the maze topology, it changes whenever a cell becomes passable or impassable.
+     *
+     * @return topology version
+     */
+    int topologyVersion();
+
+    /**
+     * Adds a listener notified about changes of passable cells.
+     *
+     * @param listener listener to be added
+     */
+    void addTerrainListener(TerrainListener listener);
+
+    /**
+     * Removes a listener of changes of passable cells.
+     *
+     * @param listener listener to be removed
+     */
+    void removeTerrainListener(TerrainListener listener);
+
     /**
      * Moves all objects to their start positions. Calls a method for every object
      * to move to its start field.
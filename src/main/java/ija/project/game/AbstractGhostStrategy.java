@@ -0,0 +1,118 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.util.SplittableRandom;
+
+/**
+ * Abstract ghost strategy handling the moves shared by all behaviours. Ghosts in corridors follow them and, if the
+ * strategy flees, eatable ghosts run away from pacman by the flow field, subclasses only decide on junctions and
+ * dead ends. Possible moves are passed as a bitmask of direction ordinals and random choices are drawn from the
+ * stream of the ghost, so a strategy keeps no state of a decision and can be shared by ghosts deciding in parallel.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public abstract class AbstractGhostStrategy implements GhostStrategy {
+    /**
+     * All directions, cached so that lookups do not allocate
+     */
+    protected static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+
+    /**
+     * Whether eatable ghosts run away from pacman
+     */
+    private final boolean flees;
+
+    /**
+     * Constructor.
+     *
+     * @param flees whether eatable ghosts run away from pacman
+     */
+    protected AbstractGhostStrategy(boolean flees) {
+        this.flees = flees;
+    }
+
+    /**
+     * Checks whether eatable ghosts of the strategy run away from pacman.
+     *
+     * @return true if they flee
+     */
+    public boolean flees() {
+        return this.flees;
+    }
+
+    /**
+     * Chooses the direction of the next move. Eatable ghosts flee if the strategy flees, ghosts in corridors follow
+     * them and on other cells {@link #decide} is asked. A ghost turns back only if there is no other move.
+     *
+     * @param ghosts    population of the ghosts
+     * @param id        ID of the ghost to move
+     * @param situation state of the game shared by all ghosts in the current tick
+     * @return direction of the next move
+     */
+    @Override
+    public Field.Direction choose(GhostPopulation ghosts, int id, Situation situation) {
+        Maze maze = situation.getMaze();
+        int cell = ghosts.cell(id);
+        Field.Direction dir = ghosts.direction(id);
+        // eatable ghosts run away from pacman while they can
+        if (this.flees && ghosts.isEatable(id) && situation.getFlowField() != null) {
+            Field.Direction away = situation.getFlowField().away(cell);
+            if (away != null) {
+                return away;
+            }
+        }
+        // in a corridor there is nothing to decide, the ghost follows it
+        if (situation.getJunctions() != null && !situation.getJunctions().isNode(cell)) {
+            Field.Direction next = situation.getJunctions().follow(cell, dir);
+            if (next != null) {
+                return next;
+            }
+        }
+        int exits = maze.exits(cell);
+        Field.Direction back = dir.opposite(dir);
+        int options = exits & ~(1 << back.ordinal());
+        if (options == 0) {
+            return exits != 0 ? back : dir;
+        }
+        return decide(ghosts, id, situation, cell, options);
+    }
+
+    /**
+     * Chooses one of the possible moves on a cell where the ghost has to decide.
+     *
+     * @param ghosts    population of the ghosts
+     * @param id        ID of the ghost to move
+     * @param situation state of the game shared by all ghosts in the current tick
+     * @param cell      cell id of the ghost
+     * @param options   bitmask of possible moves indexed by direction ordinal, not empty
+     * @return direction of the next move
+     */
+    protected abstract Field.Direction decide(GhostPopulation ghosts, int id, Situation situation, int cell,
+                                              int options);
+
+    /**
+     * Checks whether a direction is one of the possible moves.
+     *
+     * @param dir     direction, may be null
+     * @param options bitmask of possible moves
+     * @return true if the direction is possible
+     */
+    protected static boolean isOption(Field.Direction dir, int options) {
+        return dir != null && (options & (1 << dir.ordinal())) != 0;
+    }
+
+    /**
+     * Returns a random possible move.
+     *
+     * @param random  random stream of the ghost
+     * @param options bitmask of possible moves, not empty
+     * @return direction
+     */
+    protected static Field.Direction randomOption(SplittableRandom random, int options) {
+        for (int skip = random.nextInt(Integer.bitCount(options)); skip > 0; skip--) {
+            options &= options - 1;
+        }
+        return DIRECTIONS[Integer.numberOfTrailingZeros(options)];
+    }
+}
@@ -13,46 +13,61 @@ import java.util.Set;
 public abstract class AbstractObservable implements Observable {
     /**
      * Set of observers. Observers are notified when the field is changed.
+     * Created with the first observer, most objects are never observed.
      */
-    private final Set<Observer> observers = new HashSet<>();
+    private Set<Observer> observers;
     /**
      * These observers are notified when the field is changed and the change is
-     * logged.
+     * logged. Created with the first observer.
      */
-    private final Set<Observer> logObservers = new HashSet<>();
+    private Set<Observer> logObservers;
 
     public AbstractObservable() {
     }
 
     public void addObserver(Observer o) {
+        if (this.observers == null) {
+            this.observers = new HashSet<>();
+        }
         this.observers.add(o);
     }
 
     public void removeObserver(Observer o) {
-        this.observers.remove(o);
+        if (this.observers != null) {
+            this.observers.remove(o);
+        }
     }
 
     public void notifyObservers() {
-        this.observers.forEach((o) -> o.update(this));
+        if (this.observers != null) {
+            this.observers.forEach((o) -> o.update(this));
+        }
     }
 
     public void addLogObserver(Observer o) {
+        if (this.logObservers == null) {
+            this.logObservers = new HashSet<>();
+        }
         this.logObservers.add(o);
     }
 
     public void removeLogObserver(Observer o) {
-        this.logObservers.remove(o);
+        if (this.logObservers != null) {
+            this.logObservers.remove(o);
+        }
     }
 
     public void notifyLogObservers() {
-        this.logObservers.forEach((o) -> o.update(this));
+        if (this.logObservers != null) {
+            this.logObservers.forEach((o) -> o.update(this));
+        }
     }
 
     public List<Observer> getObservers() {
-        return List.copyOf(this.observers);
+        return this.observers == null ? List.of() : List.copyOf(this.observers);
     }
 
     public List<Observer> getLogObservers() {
-        return List.copyOf(this.logObservers);
+        return this.logObservers == null ? List.of() : List.copyOf(this.logObservers);
     }
 }
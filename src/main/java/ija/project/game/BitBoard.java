@@ -0,0 +1,358 @@
+package ija.project.game;
+
+import java.util.Arrays;
+
+/**
+ * Class representing one bit per maze cell. Bit with index {@code cell} belongs to the cell with that cell id.
+ * Whole-board queries are answered by word-wide operations over the underlying {@code long[]}. Boards created by
+ * {@link #share()} share their words until one of them is changed.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class BitBoard {
+    /**
+     * Number of bits (cells) of the board
+     */
+    private final int size;
+    /**
+     * Bits of the board, 64 cells per word
+     */
+    private long[] words;
+    /**
+     * Indicates whether the words are shared with another board and must be copied before a change
+     */
+    private boolean shared;
+
+    /**
+     * Constructor. All bits are cleared.
+     *
+     * @param size number of cells
+     */
+    public BitBoard(int size) {
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other board to be copied
+     */
+    public BitBoard(BitBoard other) {
+        this.size = other.size;
+        this.words = other.words.clone();
+    }
+
+    /**
+     * Constructor of a board sharing the given words.
+     *
+     * @param size  number of cells
+     * @param words words shared with another board
+     */
+    private BitBoard(int size, long[] words) {
+        this.size = size;
+        this.words = words;
+        this.shared = true;
+    }
+
+    /**
+     * Creates a board with the same bits that shares words with this board. Both boards copy the words before
+     * their first change.
+     *
+     * @return board with the same bits
+     */
+    BitBoard share() {
+        this.shared = true;
+        return new BitBoard(this.size, this.words);
+    }
+
+    /**
+     * Returns number of cells of the board.
+     *
+     * @return number of cells
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the bit of the cell.
+     *
+     * @param cell cell id
+     * @return true if the bit is set, false otherwise
+     */
+    public boolean get(int cell) {
+        return (words[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Sets the bit of the cell.
+     *
+     * @param cell cell id
+     */
+    public void set(int cell) {
+        if ((words[cell >>> 6] & (1L << cell)) == 0) {
+            writable()[cell >>> 6] |= 1L << cell;
+        }
+    }
+
+    /**
+     * Clears the bit of the cell.
+     *
+     * @param cell cell id
+     */
+    public void clear(int cell) {
+        if ((words[cell >>> 6] & (1L << cell)) != 0) {
+            writable()[cell >>> 6] &= ~(1L << cell);
+        }
+    }
+
+    /**
+     * Sets or clears the bit of the cell.
+     *
+     * @param cell  cell id
+     * @param value new value of the bit
+     */
+    public void set(int cell, boolean value) {
+        if (value) {
+            set(cell);
+        } else {
+            clear(cell);
+        }
+    }
+
+    /**
+     * Sets bits of all cells of the board.
+     */
+    public void setAll() {
+        Arrays.fill(writable(), -1L);
+        trim();
+    }
+
+    /**
+     * Returns number of set bits.
+     *
+     * @return number of set bits
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Returns number of set bits in the range.
+     *
+     * @param from first cell of the range, inclusive
+     * @param to   last cell of the range, exclusive
+     * @return number of set bits in the range
+     */
+    public int count(int from, int to) {
+        int count = 0;
+        for (int w = from >>> 6; from < to; w++) {
+            int end = Math.min(to, (w + 1) << 6);
+            count += Long.bitCount(words[w] & rangeMask(from, end));
+            from = end;
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether any bit in the range is set.
+     *
+     * @param from first cell of the range, inclusive
+     * @param to   last cell of the range, exclusive
+     * @return true if at least one bit is set, false otherwise
+     */
+    public boolean any(int from, int to) {
+        for (int w = from >>> 6; from < to; w++) {
+            int end = Math.min(to, (w + 1) << 6);
+            if ((words[w] & rangeMask(from, end)) != 0) {
+                return true;
+            }
+            from = end;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether no bit is set.
+     *
+     * @return true if the board is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether this board and the other board have a common set bit.
+     *
+     * @param other board of the same size
+     * @return true if boards intersect, false otherwise
+     */
+    public boolean intersects(BitBoard other) {
+        for (int i = 0; i < words.length; i++) {
+            if ((words[i] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keeps only bits set also in the other board.
+     *
+     * @param other board of the same size
+     */
+    public void and(BitBoard other) {
+        long[] words = writable();
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= other.words[i];
+        }
+    }
+
+    /**
+     * Sets bits that are set in the other board.
+     *
+     * @param other board of the same size
+     */
+    public void or(BitBoard other) {
+        long[] words = writable();
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    /**
+     * Clears bits that are set in the other board.
+     *
+     * @param other board of the same size
+     */
+    public void andNot(BitBoard other) {
+        long[] words = writable();
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= ~other.words[i];
+        }
+    }
+
+    /**
+     * Returns index of the first set bit starting at the given cell.
+     *
+     * @param from first cell to be checked
+     * @return cell id of the first set bit or -1 if there is none
+     */
+    public int nextSetBit(int from) {
+        if (from >= size) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Grows the set bits by one cell in all four directions of a grid with the given row length and keeps only
+     * the cells allowed by the mask. One step of a word-wide flood fill.
+     *
+     * @param cols    number of cells in one row of the grid
+     * @param allowed cells that can be reached
+     * @param scratch board of the same size used as temporary storage
+     * @return true if any bit was added, false otherwise
+     */
+    boolean grow(int cols, BitBoard allowed, BitBoard scratch) {
+        long[] words = writable();
+        long[] tmp = scratch.writable();
+        System.arraycopy(words, 0, tmp, 0, words.length);
+        orShifted(tmp, 1);
+        orShifted(tmp, -1);
+        orShifted(tmp, cols);
+        orShifted(tmp, -cols);
+        boolean changed = false;
+        for (int i = 0; i < words.length; i++) {
+            long grown = tmp[i] & allowed.words[i];
+            if (grown != words[i]) {
+                words[i] = grown;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Ors this board shifted by the given number of cells into the target words.
+     *
+     * @param target words to be or-ed into
+     * @param shift  positive value moves bits to higher cells, negative to lower cells
+     */
+    private void orShifted(long[] target, int shift) {
+        int wordShift = Math.abs(shift) >>> 6;
+        int bitShift = Math.abs(shift) & 63;
+        if (shift > 0) {
+            for (int i = words.length - 1; i >= wordShift; i--) {
+                long word = words[i - wordShift] << bitShift;
+                if (bitShift != 0 && i - wordShift - 1 >= 0) {
+                    word |= words[i - wordShift - 1] >>> (64 - bitShift);
+                }
+                target[i] |= word;
+            }
+        } else {
+            for (int i = 0; i + wordShift < words.length; i++) {
+                long word = words[i + wordShift] >>> bitShift;
+                if (bitShift != 0 && i + wordShift + 1 < words.length) {
+                    word |= words[i + wordShift + 1] << (64 - bitShift);
+                }
+                target[i] |= word;
+            }
+        }
+    }
+
+    /**
+     * Returns words that can be changed, copies them first if they are shared.
+     *
+     * @return words of this board
+     */
+    private long[] writable() {
+        if (shared) {
+            words = words.clone();
+            shared = false;
+        }
+        return words;
+    }
+
+    /**
+     * Clears bits beyond the size of the board.
+     */
+    private void trim() {
+        int tail = size & 63;
+        if (tail != 0) {
+            words[words.length - 1] &= (1L << tail) - 1;
+        }
+    }
+
+    /**
+     * Returns mask of bits from {@code from} to {@code to} within one word.
+     *
+     * @param from first cell, inclusive
+     * @param to   last cell, exclusive, at most at the end of the word of {@code from}
+     * @return mask of the range
+     */
+    private static long rangeMask(int from, int to) {
+        long mask = -1L << from;
+        if ((to & 63) != 0) {
+            mask &= (1L << to) - 1;
+        }
+        return mask;
+    }
+}
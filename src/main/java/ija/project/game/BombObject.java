@@ -18,7 +18,9 @@ public class BombObject extends AbstractObservable implements MazeObject {
 
     public BombObject(Field field, Observer logWriter){
         this.field = field;
-        addLogObserver(logWriter);
+        if (logWriter != null) {
+            addLogObserver(logWriter);
+        }
         setTimer(3);
     }
     @Override
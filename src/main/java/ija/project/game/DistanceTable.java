@@ -0,0 +1,321 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Class holding shortest distances between all pairs of passable cells of a maze. Passable cells are numbered
+ * densely and distances are stored as a {@code char} matrix, one row per start cell, computed by a breadth-first
+ * search from every cell in parallel. Tables are stored in a cache directory under the hash of the maze topology
+ * and memory-mapped when the same topology is loaded again.
+ * <p>
+ * File layout: magic, number of rows and columns of the maze, number of passable cells, topology hash, CRC32 of the
+ * distance matrix, cell ids of the passable cells and the distance matrix, all big-endian. A damaged matrix is
+ * computed and stored again.
+ * <p>
+ * The table describes the topology at the time it was created, {@link #isCurrent()} tells whether the maze was
+ * changed since. Mazes with more than {@value #MAX_CELLS} passable cells get no table, path finding is used instead.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class DistanceTable {
+    /**
+     * Maximal number of passable cells for which the table is built, the matrix then takes at most 8 MiB
+     */
+    public static final int MAX_CELLS = 2048;
+    /**
+     * Distance of cells that are not connected
+     */
+    private static final char UNREACHABLE = Character.MAX_VALUE;
+    /**
+     * Magic number of the table file, "PDT2"
+     */
+    private static final int MAGIC = 0x50445432;
+    /**
+     * Size of the file header in bytes
+     */
+    private static final int HEADER_SIZE = 4 + 4 * 3 + 8 + 8;
+    /**
+     * All directions, cached so that lookups do not allocate
+     */
+    private static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+
+    /**
+     * Maze of the table
+     */
+    private final Maze maze;
+    /**
+     * Topology version of the maze when the table was created
+     */
+    private final int version;
+    /**
+     * Dense index of every cell, -1 for walls
+     */
+    private final int[] index;
+    /**
+     * Number of passable cells
+     */
+    private final int count;
+    /**
+     * Distance matrix, distance from dense cell {@code a} to dense cell {@code b} is at {@code a * count + b}
+     */
+    private final CharBuffer distances;
+
+    /**
+     * Constructor.
+     *
+     * @param maze      maze of the table
+     * @param version   topology version of the maze
+     * @param index     dense index of every cell
+     * @param count     number of passable cells
+     * @param distances distance matrix
+     */
+    private DistanceTable(Maze maze, int version, int[] index, int count, CharBuffer distances) {
+        this.maze = maze;
+        this.version = version;
+        this.index = index;
+        this.count = count;
+        this.distances = distances;
+    }
+
+    /**
+     * Returns distance table of the current topology of the maze. The table is loaded from the cache directory if
+     * it was computed before, otherwise it is computed and stored there. Problems with the cache are reported and
+     * the table is only kept in memory.
+     *
+     * @param maze      maze
+     * @param directory cache directory, null if tables should not be stored
+     * @return distance table or null if the maze has too many passable cells
+     */
+    public static DistanceTable of(Maze maze, Path directory) {
+        int version = maze.topologyVersion();
+        int[] index = new int[maze.numCells()];
+        int count = 0;
+        long hash = 0xcbf29ce484222325L;
+        for (int cell = 0; cell < index.length; cell++) {
+            if (!maze.isPassable(cell)) {
+                index[cell] = -1;
+                continue;
+            }
+            if (count == MAX_CELLS) {
+                return null;
+            }
+            index[cell] = count++;
+            hash = (hash ^ cell) * 0x100000001b3L;
+        }
+        hash = (hash ^ maze.numRows()) * 0x100000001b3L;
+        hash = (hash ^ maze.numCols()) * 0x100000001b3L;
+
+        Path file = directory == null ? null : directory.resolve(String.format("%016x.dist", hash));
+        if (file != null && Files.isReadable(file)) {
+            try {
+                CharBuffer distances = map(file, maze, count, hash, index);
+                if (distances != null) {
+                    return new DistanceTable(maze, version, index, count, distances);
+                }
+            } catch (IOException e) {
+                System.err.println("Distance table " + file + " cannot be used: " + e.getMessage());
+            }
+        }
+        char[] distances = compute(maze, index, count);
+        if (file != null) {
+            try {
+                write(file, maze, index, count, hash, distances);
+            } catch (IOException e) {
+                System.err.println("Distance table " + file + " cannot be stored: " + e.getMessage());
+            }
+        }
+        return new DistanceTable(maze, version, index, count, CharBuffer.wrap(distances));
+    }
+
+    /**
+     * Checks whether the table still describes the maze.
+     *
+     * @return true if the topology did not change since the table was created, false otherwise
+     */
+    public boolean isCurrent() {
+        return this.version == this.maze.topologyVersion();
+    }
+
+    /**
+     * Returns the maze of the table.
+     *
+     * @return maze
+     */
+    public Maze getMaze() {
+        return this.maze;
+    }
+
+    /**
+     * Returns length of the shortest path between two cells.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return number of moves or -1 if a cell is a wall or the cells are not connected
+     */
+    public int distance(int from, int to) {
+        int a = this.index[from];
+        int b = this.index[to];
+        if (a < 0 || b < 0) {
+            return -1;
+        }
+        char d = this.distances.get(a * this.count + b);
+        return d == UNREACHABLE ? -1 : d;
+    }
+
+    /**
+     * Returns the first move of a shortest path between two cells.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return direction of the first move or null if the cells are equal or not connected
+     */
+    public Field.Direction nextStep(int from, int to) {
+        int d = distance(from, to);
+        if (d <= 0) {
+            return null;
+        }
+        int exits = this.maze.exits(from);
+        for (Field.Direction dir : DIRECTIONS) {
+            if ((exits & (1 << dir.ordinal())) != 0 && distance(this.maze.neighbour(from, dir), to) == d - 1) {
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Computes the distance matrix by a breadth-first search from every passable cell, searches run in parallel.
+     *
+     * @param maze  maze
+     * @param index dense index of every cell
+     * @param count number of passable cells
+     * @return distance matrix
+     */
+    private static char[] compute(Maze maze, int[] index, int count) {
+        // neighbours by dense index so that the searches do not touch the maze
+        int[] adjacency = new int[count * DIRECTIONS.length];
+        for (int cell = 0; cell < index.length; cell++) {
+            int a = index[cell];
+            if (a < 0) {
+                continue;
+            }
+            for (Field.Direction dir : DIRECTIONS) {
+                adjacency[a * DIRECTIONS.length + dir.ordinal()] =
+                        maze.canMove(cell, dir) ? index[maze.neighbour(cell, dir)] : -1;
+            }
+        }
+        char[] distances = new char[count * count];
+        Arrays.fill(distances, UNREACHABLE);
+        ThreadLocal<int[]> queues = ThreadLocal.withInitial(() -> new int[count]);
+        IntStream.range(0, count).parallel().forEach(source -> {
+            int[] queue = queues.get();
+            int row = source * count;
+            int head = 0;
+            int tail = 0;
+            distances[row + source] = 0;
+            queue[tail++] = source;
+            while (head < tail) {
+                int a = queue[head++];
+                char next = (char) (distances[row + a] + 1);
+                for (int i = a * DIRECTIONS.length; i < (a + 1) * DIRECTIONS.length; i++) {
+                    int b = adjacency[i];
+                    if (b >= 0 && distances[row + b] == UNREACHABLE) {
+                        distances[row + b] = next;
+                        queue[tail++] = b;
+                    }
+                }
+            }
+        });
+        return distances;
+    }
+
+    /**
+     * Memory-maps a stored table if it belongs to the topology.
+     *
+     * @param file  table file
+     * @param maze  maze
+     * @param count number of passable cells
+     * @param hash  topology hash
+     * @param index dense index of every cell
+     * @return distance matrix or null if the file belongs to another topology
+     * @throws IOException if the file cannot be read or is damaged
+     */
+    private static CharBuffer map(Path file, Maze maze, int count, long hash, int[] index) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long expected = HEADER_SIZE + 4L * count + 2L * count * count;
+            if (channel.size() != expected) {
+                throw new IOException("unexpected size");
+            }
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            if (data.getInt() != MAGIC) {
+                throw new IOException("unknown format");
+            }
+            if (data.getInt() != maze.numRows() || data.getInt() != maze.numCols() || data.getInt() != count
+                    || data.getLong() != hash) {
+                return null;
+            }
+            long checksum = data.getLong();
+            for (int cell = 0; cell < index.length; cell++) {
+                if (index[cell] >= 0 && data.getInt() != cell) {
+                    return null;
+                }
+            }
+            ByteBuffer matrix = data.slice();
+            CRC32 crc = new CRC32();
+            crc.update(matrix.duplicate());
+            if (crc.getValue() != checksum) {
+                throw new IOException("checksum mismatch");
+            }
+            return matrix.asCharBuffer();
+        }
+    }
+
+    /**
+     * Stores the table to a file.
+     *
+     * @param file      table file
+     * @param maze      maze
+     * @param index     dense index of every cell
+     * @param count     number of passable cells
+     * @param hash      topology hash
+     * @param distances distance matrix
+     * @throws IOException if the file cannot be written
+     */
+    private static void write(Path file, Maze maze, int[] index, int count, long hash, char[] distances)
+            throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + 4 * count + 2 * distances.length);
+        data.putInt(MAGIC).putInt(maze.numRows()).putInt(maze.numCols()).putInt(count).putLong(hash);
+        int checksumOffset = data.position();
+        data.putLong(0);
+        for (int cell = 0; cell < index.length; cell++) {
+            if (index[cell] >= 0) {
+                data.putInt(cell);
+            }
+        }
+        int matrixOffset = data.position();
+        data.asCharBuffer().put(distances);
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), matrixOffset, 2 * distances.length);
+        data.putLong(checksumOffset, crc.getValue());
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, data.array());
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
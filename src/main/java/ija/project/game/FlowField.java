@@ -0,0 +1,273 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.util.Arrays;
+
+/**
+ * Class holding distances of all cells to one source cell, usually pacman, so that any number of ghosts can read
+ * their best move in constant time. Distances are computed by a breadth-first search from the source and kept until
+ * the source moves or the topology of the maze changes.
+ * <p>
+ * The flee field is derived from it on demand: distances are multiplied by {@code -}{@value #FLEE_FACTOR} and
+ * relaxed again, so a fleeing ghost moves away from the source but prefers escape routes over dead ends that are
+ * only slightly farther.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class FlowField {
+    /**
+     * Factor by which distances are multiplied in the flee field, above 1 so that fleeing can pass the source
+     */
+    public static final double FLEE_FACTOR = 1.2;
+    /**
+     * Cost of a move in the flee field, distances are scaled so that the field keeps integer values
+     */
+    private static final int FLEE_STEP = 5;
+    /**
+     * Value of cells that cannot reach the source
+     */
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    /**
+     * All directions, cached so that lookups do not allocate
+     */
+    private static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+
+    /**
+     * Maze of the field
+     */
+    private final Maze maze;
+    /**
+     * Distance of every cell to the source
+     */
+    private final int[] distances;
+    /**
+     * Flee value of every cell, lower is safer
+     */
+    private final int[] flee;
+    /**
+     * Queue of the breadth-first search
+     */
+    private final int[] queue;
+    /**
+     * Current source, -1 if the field was not computed yet
+     */
+    private int source = -1;
+    /**
+     * Topology version of the maze for which the field was computed
+     */
+    private int version;
+    /**
+     * Largest finite distance in the field
+     */
+    private int maxDistance;
+    /**
+     * Whether {@link #flee} belongs to the current distances
+     */
+    private volatile boolean fleeValid;
+    /**
+     * First entry of every bucket of the flee relaxation
+     */
+    private int[] bucketHead = new int[0];
+    /**
+     * Cell of every bucket entry
+     */
+    private int[] entryCell = new int[0];
+    /**
+     * Next entry of the same bucket, -1 at the end
+     */
+    private int[] entryNext = new int[0];
+
+    /**
+     * Constructor.
+     *
+     * @param maze maze of the field
+     */
+    public FlowField(Maze maze) {
+        this.maze = maze;
+        this.distances = new int[maze.numCells()];
+        this.flee = new int[maze.numCells()];
+        this.queue = new int[maze.numCells()];
+    }
+
+    /**
+     * Returns the maze of the field.
+     *
+     * @return maze
+     */
+    public Maze getMaze() {
+        return this.maze;
+    }
+
+    /**
+     * Computes the field for a source cell, nothing is done if neither the source nor the topology changed.
+     *
+     * @param source cell id of the source
+     */
+    public void update(int source) {
+        int version = this.maze.topologyVersion();
+        if (source == this.source && version == this.version) {
+            return;
+        }
+        this.source = source;
+        this.version = version;
+        this.fleeValid = false;
+        Arrays.fill(this.distances, UNREACHABLE);
+        this.maxDistance = 0;
+        if (!this.maze.isPassable(source)) {
+            return;
+        }
+        int head = 0;
+        int tail = 0;
+        this.distances[source] = 0;
+        this.queue[tail++] = source;
+        while (head < tail) {
+            int cell = this.queue[head++];
+            int next = this.distances[cell] + 1;
+            int exits = this.maze.exits(cell);
+            for (Field.Direction dir : DIRECTIONS) {
+                if ((exits & (1 << dir.ordinal())) == 0) {
+                    continue;
+                }
+                int neighbour = this.maze.neighbour(cell, dir);
+                if (this.distances[neighbour] == UNREACHABLE) {
+                    this.distances[neighbour] = next;
+                    this.maxDistance = next;
+                    this.queue[tail++] = neighbour;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the current source.
+     *
+     * @return cell id of the source, -1 if the field was not computed yet
+     */
+    public int source() {
+        return this.source;
+    }
+
+    /**
+     * Returns distance of a cell to the source.
+     *
+     * @param cell cell id
+     * @return number of moves or -1 if the cell cannot reach the source
+     */
+    public int distance(int cell) {
+        int d = this.distances[cell];
+        return d == UNREACHABLE ? -1 : d;
+    }
+
+    /**
+     * Returns the move from a cell towards the source.
+     *
+     * @param cell cell id
+     * @return direction of a shortest path to the source or null if the cell is the source or cannot reach it
+     */
+    public Field.Direction towards(int cell) {
+        int d = this.distances[cell];
+        if (d == UNREACHABLE || d == 0) {
+            return null;
+        }
+        int exits = this.maze.exits(cell);
+        for (Field.Direction dir : DIRECTIONS) {
+            if ((exits & (1 << dir.ordinal())) != 0 && this.distances[this.maze.neighbour(cell, dir)] == d - 1) {
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the move from a cell away from the source according to the flee field.
+     *
+     * @param cell cell id
+     * @return direction to the safest neighbour or null if no neighbour is safer than the cell
+     */
+    public Field.Direction away(int cell) {
+        if (!this.fleeValid) {
+            synchronized (this) {
+                if (!this.fleeValid) {
+                    computeFlee();
+                }
+            }
+        }
+        Field.Direction best = null;
+        int bestValue = this.flee[cell];
+        int exits = this.maze.exits(cell);
+        for (Field.Direction dir : DIRECTIONS) {
+            if ((exits & (1 << dir.ordinal())) != 0 && this.flee[this.maze.neighbour(cell, dir)] < bestValue) {
+                best = dir;
+                bestValue = this.flee[this.maze.neighbour(cell, dir)];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Computes the flee field by Dijkstra's algorithm with buckets, every cell starts at its scaled negative
+     * distance and values only decrease, so buckets are processed from the lowest value up.
+     */
+    private void computeFlee() {
+        int scale = (int) Math.round(FLEE_FACTOR * FLEE_STEP);
+        int min = -scale * this.maxDistance;
+        int buckets = -min + 1;
+        if (this.bucketHead.length < buckets) {
+            this.bucketHead = new int[buckets];
+        }
+        Arrays.fill(this.bucketHead, 0, buckets, -1);
+        int entries = 0;
+        for (int cell = 0; cell < this.flee.length; cell++) {
+            int d = this.distances[cell];
+            if (d == UNREACHABLE) {
+                this.flee[cell] = UNREACHABLE;
+                continue;
+            }
+            this.flee[cell] = -scale * d;
+            entries = addEntry(entries, this.flee[cell] - min, cell);
+        }
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            for (int entry = this.bucketHead[bucket]; entry >= 0; entry = this.entryNext[entry]) {
+                int cell = this.entryCell[entry];
+                int value = bucket + min;
+                if (this.flee[cell] != value) {
+                    continue;
+                }
+                int next = value + FLEE_STEP;
+                int exits = this.maze.exits(cell);
+                for (Field.Direction dir : DIRECTIONS) {
+                    if ((exits & (1 << dir.ordinal())) == 0) {
+                        continue;
+                    }
+                    int neighbour = this.maze.neighbour(cell, dir);
+                    if (next < this.flee[neighbour]) {
+                        this.flee[neighbour] = next;
+                        entries = addEntry(entries, next - min, neighbour);
+                    }
+                }
+            }
+        }
+        this.fleeValid = true;
+    }
+
+    /**
+     * Adds a cell to the front of a bucket, entry arrays are grown when needed.
+     *
+     * @param entries number of used entries
+     * @param bucket  bucket index
+     * @param cell    cell id
+     * @return new number of used entries
+     */
+    private int addEntry(int entries, int bucket, int cell) {
+        if (entries == this.entryCell.length) {
+            int length = Math.max(64, entries * 2);
+            this.entryCell = Arrays.copyOf(this.entryCell, length);
+            this.entryNext = Arrays.copyOf(this.entryNext, length);
+        }
+        this.entryCell[entries] = cell;
+        this.entryNext[entries] = this.bucketHead[bucket];
+        this.bucketHead[bucket] = entries;
+        return entries + 1;
+    }
+}
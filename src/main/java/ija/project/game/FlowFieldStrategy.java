@@ -0,0 +1,69 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+
+/**
+ * Ghost strategy chasing pacman along shortest paths of the shared flow field. With a given aggression the ghost
+ * takes the shortest path on every decision, otherwise it wanders, so the aggression sets the difficulty. Eatable
+ * ghosts flee unless the strategy is created without fleeing.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public class FlowFieldStrategy extends AbstractGhostStrategy {
+    /**
+     * Chance of taking the shortest path on a decision
+     */
+    private final double aggression;
+
+    /**
+     * Constructor.
+     *
+     * @param aggression chance of taking the shortest path on a decision, between 0 and 1
+     * @param flees      whether eatable ghosts run away from pacman
+     */
+    public FlowFieldStrategy(double aggression, boolean flees) {
+        super(flees);
+        if (aggression < 0 || aggression > 1) {
+            throw new IllegalArgumentException("Aggression must be between 0 and 1");
+        }
+        this.aggression = aggression;
+    }
+
+    /**
+     * Constructor of a fleeing ghost.
+     *
+     * @param aggression chance of taking the shortest path on a decision, between 0 and 1
+     */
+    public FlowFieldStrategy(double aggression) {
+        this(aggression, true);
+    }
+
+    /**
+     * Constructor of a fleeing ghost that always takes the shortest path.
+     */
+    public FlowFieldStrategy() {
+        this(1);
+    }
+
+    /**
+     * Moves towards pacman or randomly if the ghost wanders now or the flow field is not available.
+     *
+     * @param ghosts    population of the ghosts
+     * @param id        ID of the ghost to move
+     * @param situation state of the game shared by all ghosts in the current tick
+     * @param cell      cell id of the ghost
+     * @param options   bitmask of possible moves
+     * @return direction of the next move
+     */
+    @Override
+    protected Field.Direction decide(GhostPopulation ghosts, int id, Situation situation, int cell, int options) {
+        FlowField flowField = situation.getFlowField();
+        if (flowField != null && (this.aggression >= 1 || ghosts.random(id).nextDouble() < this.aggression)) {
+            Field.Direction towards = flowField.towards(cell);
+            // turning back is not an option, the ghost reaches pacman around the loop or after a dead end
+            if (isOption(towards, options)) {
+                return towards;
+            }
+        }
+        return randomOption(ghosts.random(id), options);
+    }
+}
@@ -0,0 +1,123 @@
+package ija.project.game;
+
+/**
+ * Class of the game clock. The game runs in ticks of 1/{@value #TICKS_PER_SECOND} second of game time and all
+ * durations of the game are given in ticks, the clock converts them from seconds. When the game is driven by real
+ * time, the clock tells how many ticks are due, the speed multiplier makes the game run N times faster than real time
+ * or as fast as possible, so unattended games finish in a fraction of their game time.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class GameClock {
+    /**
+     * Number of ticks in one second of the game
+     */
+    public static final int TICKS_PER_SECOND = 50;
+    /**
+     * Speed multiplier running the game as fast as possible
+     */
+    public static final double UNBOUNDED = Double.POSITIVE_INFINITY;
+    /**
+     * Length of one tick in real time at speed 1 in nanoseconds
+     */
+    private static final long TICK_NANOS = 1_000_000_000L / TICKS_PER_SECOND;
+    /**
+     * Maximal real time counted at once, time beyond it is dropped after a stall
+     */
+    private static final long MAX_ELAPSED_NANOS = 200_000_000L;
+
+    /**
+     * Game seconds per real second
+     */
+    private double speed = 1;
+    /**
+     * Whether {@link #advance} was called since the start, real time may be negative so it has its own flag
+     */
+    private boolean started;
+    /**
+     * Real time of the last call of {@link #advance}
+     */
+    private long last;
+    /**
+     * Due ticks not yet returned by {@link #advance}
+     */
+    private double pending;
+
+    /**
+     * Converts seconds of game time to ticks.
+     *
+     * @param seconds duration in seconds
+     * @return duration in ticks rounded to the closest tick
+     */
+    public static int ticks(double seconds) {
+        return (int) Math.round(seconds * TICKS_PER_SECOND);
+    }
+
+    /**
+     * Converts ticks to seconds of game time.
+     *
+     * @param ticks duration in ticks
+     * @return duration in seconds
+     */
+    public static double seconds(long ticks) {
+        return (double) ticks / TICKS_PER_SECOND;
+    }
+
+    /**
+     * Returns the speed multiplier.
+     *
+     * @return game seconds per real second, {@link #UNBOUNDED} if the game runs as fast as possible
+     */
+    public double getSpeed() {
+        return this.speed;
+    }
+
+    /**
+     * Sets the speed multiplier, ticks due at the old speed stay due.
+     *
+     * @param speed game seconds per real second, {@link #UNBOUNDED} to run as fast as possible
+     */
+    public void setSpeed(double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive");
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * Checks whether the game runs as fast as possible.
+     *
+     * @return true if the speed is {@link #UNBOUNDED}
+     */
+    public boolean isUnbounded() {
+        return this.speed == UNBOUNDED;
+    }
+
+    /**
+     * Starts or restarts counting of real time, one tick is due at once and time before the start is not counted.
+     */
+    public void start() {
+        this.started = false;
+        this.pending = 1;
+    }
+
+    /**
+     * Counts real time elapsed since the last call and returns ticks due in it. Returned ticks are expected to be
+     * run, ticks the caller does not manage to run are dropped.
+     *
+     * @param now real time in nanoseconds, e.g. {@link System#nanoTime()}
+     * @return number of ticks to run, {@link Long#MAX_VALUE} if the game runs as fast as possible
+     */
+    public long advance(long now) {
+        long elapsed = this.started ? Math.min(now - this.last, MAX_ELAPSED_NANOS) : 0;
+        this.started = true;
+        this.last = now;
+        if (isUnbounded()) {
+            this.pending = 0;
+            return Long.MAX_VALUE;
+        }
+        this.pending += elapsed * this.speed / TICK_NANOS;
+        long due = (long) this.pending;
+        this.pending -= due;
+        return due;
+    }
+}
@@ -0,0 +1,585 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+import ija.project.common.MazeObject;
+import ija.project.common.Observable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class advancing a game by fixed time steps. One call of {@link #step()} advances the game by one tick of
+ * 1/{@value #TICKS_PER_SECOND} second and runs events of the tick from the {@link GameScheduler}: the eatable phase
+ * of ghosts changes, bombs count down and explode, ghosts and pacman move when their speed says so. Events of one
+ * tick run in this order. The engine does not depend on any timer, thread or user interface, views only observe the
+ * objects of the maze, so a game can also run headless as fast as the CPU allows. Durations are ticks converted by
+ * the {@link GameClock}.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class GameEngine {
+    /**
+     * Number of ticks in one second of the game
+     */
+    public static final int TICKS_PER_SECOND = GameClock.TICKS_PER_SECOND;
+    /**
+     * Default speed of pacman in fields per second
+     */
+    public static final double DEFAULT_PACMAN_SPEED = 3.5;
+    /**
+     * Default speed of ghosts in fields per second
+     */
+    public static final double DEFAULT_GHOST_SPEED = 2;
+    /**
+     * Ticks from the start of a cycle until ghosts become eatable
+     */
+    public static final int EATABLE_DELAY = GameClock.ticks(10);
+    /**
+     * Ticks for which ghosts stay eatable
+     */
+    public static final int EATABLE_DURATION = GameClock.ticks(5);
+    /**
+     * Ticks after ghosts stop being eatable until the next cycle starts
+     */
+    public static final int EATABLE_INTERVAL = GameClock.ticks(10);
+    /**
+     * Seconds from placing a bomb to its explosion
+     */
+    public static final int BOMB_SECONDS = 3;
+    /**
+     * Minimal number of cells of the maze for which {@link #setApproximatePaths} switches to hierarchical search
+     */
+    public static final int HIERARCHICAL_CELLS = 1 << 18;
+    /**
+     * Priority of events changing the eatable phase
+     */
+    private static final int EATABLE_PRIORITY = 0;
+    /**
+     * Priority of bomb countdowns
+     */
+    private static final int BOMB_PRIORITY = 1;
+    /**
+     * Priority of ghost moves
+     */
+    private static final int GHOST_PRIORITY = 2;
+    /**
+     * Priority of pacman moves
+     */
+    private static final int PACMAN_PRIORITY = 3;
+
+    /**
+     * Maze of the game
+     */
+    private final Maze maze;
+    /**
+     * Seed of ghost decisions
+     */
+    private final long seed;
+    /**
+     * Scheduler of all events of the game
+     */
+    private final GameScheduler scheduler = new GameScheduler();
+    /**
+     * Repeated move of pacman
+     */
+    private final Mover pacmanMover;
+    /**
+     * Repeated move of ghosts
+     */
+    private final Mover ghostMover;
+    /**
+     * Event making ghosts eatable
+     */
+    private final GameScheduler.Event eatableStart;
+    /**
+     * Event making ghosts uneatable
+     */
+    private final GameScheduler.Event eatableEnd;
+    /**
+     * Observer logging placed bombs, may be null
+     */
+    private Observable.Observer logObserver;
+    /**
+     * Path finder of the maze
+     */
+    private final PathFinder pathFinder;
+    /**
+     * Recently found paths of the maze
+     */
+    private final PathCache pathCache;
+    /**
+     * Path of pacman set on click to the maze
+     */
+    private List<Field.Direction> pacmanPath = new ArrayList<>();
+    /**
+     * Cell id of the destination of {@link #pacmanPath}
+     */
+    private int pacmanDestination = -1;
+    /**
+     * Topology version of the maze for which {@link #pacmanPath} was planned
+     */
+    private int pacmanPathVersion = -1;
+    /**
+     * Incremental path finder repairing {@link #pacmanPath} when terrain changes, created with the first change
+     */
+    private IncrementalPathFinder replanner;
+    /**
+     * Distances to pacman shared by all ghosts, updated once per ghost move
+     */
+    private final FlowField flowField;
+    /**
+     * State of the game read by ghost strategies
+     */
+    private final GhostStrategy.Situation situation = new GhostStrategy.Situation();
+    /**
+     * Planner deciding ghost moves in parallel and applying them in order
+     */
+    private final GhostPlanner ghostPlanner;
+    /**
+     * Buffer for ids of ghosts colliding with pacman
+     */
+    private int[] collisions = new int[0];
+
+    /**
+     * Constructor. Ghosts get random streams split from the seed and decide in the common pool.
+     *
+     * @param maze maze of a new game
+     * @param seed seed of ghost decisions
+     */
+    public GameEngine(Maze maze, long seed) {
+        this(maze, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor. Ghosts get random streams split from the seed, the game does not depend on the pool.
+     *
+     * @param maze maze of a new game
+     * @param seed seed of ghost decisions
+     * @param pool pool in which ghosts decide their moves
+     */
+    public GameEngine(Maze maze, long seed, ForkJoinPool pool) {
+        this.maze = maze;
+        this.ghostPlanner = new GhostPlanner(pool);
+        this.seed = seed;
+        this.pathFinder = new PathFinder(maze);
+        this.pathCache = new PathCache(maze);
+        this.flowField = new FlowField(maze);
+        maze.getGhostPopulation().seed(seed);
+        this.eatableStart = this.scheduler.event(EATABLE_PRIORITY, this::startEatable);
+        this.eatableEnd = this.scheduler.event(EATABLE_PRIORITY, this::endEatable);
+        this.ghostMover = new Mover(GHOST_PRIORITY, DEFAULT_GHOST_SPEED, this::moveGhosts);
+        this.pacmanMover = new Mover(PACMAN_PRIORITY, DEFAULT_PACMAN_SPEED, this::movePacman);
+        this.eatableStart.at(EATABLE_DELAY);
+        this.ghostMover.start();
+        this.pacmanMover.start();
+    }
+
+    /**
+     * Returns the maze of the game.
+     *
+     * @return maze
+     */
+    public Maze getMaze() {
+        return this.maze;
+    }
+
+    /**
+     * Returns the seed of ghost decisions.
+     *
+     * @return seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Returns number of finished ticks.
+     *
+     * @return ticks since the start of the game
+     */
+    public long tick() {
+        return this.scheduler.tick();
+    }
+
+    /**
+     * Returns the scheduler of the game, further events of the game are scheduled on it.
+     *
+     * @return scheduler
+     */
+    public GameScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Returns the path finder of the maze.
+     *
+     * @return path finder
+     */
+    public PathFinder getPathFinder() {
+        return this.pathFinder;
+    }
+
+    /**
+     * Allows paths of pacman slightly longer than the shortest ones on very large mazes. On mazes with at least
+     * {@value #HIERARCHICAL_CELLS} cells the path finder then uses {@link PathFinder.Mode#HIERARCHICAL}, which answers
+     * a click much faster, smaller mazes keep searching shortest paths.
+     *
+     * @param approximate true to allow approximate paths, false for shortest paths only
+     */
+    public void setApproximatePaths(boolean approximate) {
+        this.pathFinder.setMode(approximate && this.maze.numCells() >= HIERARCHICAL_CELLS
+                ? PathFinder.Mode.HIERARCHICAL : PathFinder.Mode.AUTO);
+    }
+
+    /**
+     * Sets the speed of pacman.
+     *
+     * @param speed fields per second, at most {@value #TICKS_PER_SECOND}
+     */
+    public void setPacmanSpeed(double speed) {
+        this.pacmanMover.setSpeed(checkSpeed(speed));
+    }
+
+    /**
+     * Sets the speed of ghosts.
+     *
+     * @param speed fields per second, at most {@value #TICKS_PER_SECOND}
+     */
+    public void setGhostSpeed(double speed) {
+        this.ghostMover.setSpeed(checkSpeed(speed));
+    }
+
+    /**
+     * Sets the observer logging placed bombs.
+     *
+     * @param logObserver observer or null
+     */
+    public void setLogObserver(Observable.Observer logObserver) {
+        this.logObserver = logObserver;
+    }
+
+    /**
+     * Advances the game by one tick.
+     *
+     * @throws GameException when pacman wins or loses the game
+     */
+    public void step() throws GameException {
+        this.scheduler.advance();
+    }
+
+    /**
+     * Advances the game by a number of ticks.
+     *
+     * @param ticks number of ticks
+     * @throws GameException when pacman wins or loses the game, following ticks are not run
+     */
+    public void step(int ticks) throws GameException {
+        for (int i = 0; i < ticks; i++) {
+            step();
+        }
+    }
+
+    /**
+     * Runs the game headless until it ends, as fast as the CPU allows.
+     *
+     * @param maxTicks maximal number of ticks to run
+     * @return how the game ended, null if it did not end in the given ticks
+     */
+    public GameException.TypeOfException run(long maxTicks) {
+        try {
+            for (long i = 0; i < maxTicks; i++) {
+                step();
+            }
+        } catch (GameException e) {
+            return e.type;
+        }
+        return null;
+    }
+
+    /**
+     * Finds path of pacman, paths are cached until the topology of the maze changes.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return new list of directions, empty if the destination is not reachable
+     */
+    public List<Field.Direction> findPath(int from, int to) {
+        return this.pathCache.findPath(this.pathFinder, from, to);
+    }
+
+    /**
+     * Sets the path pacman follows instead of its direction.
+     *
+     * @param path        directions leading to the destination
+     * @param destination cell id of the destination, used to plan the path again when terrain changes
+     */
+    public void setPacmanPath(List<Field.Direction> path, int destination) {
+        this.pacmanPath = path;
+        this.pacmanDestination = destination;
+        this.pacmanPathVersion = this.maze.topologyVersion();
+    }
+
+    /**
+     * Stops following the path of pacman, pacman continues in its direction.
+     */
+    public void clearPacmanPath() {
+        this.pacmanPath.clear();
+    }
+
+    /**
+     * Places a bomb on the field of pacman if pacman has one. The bomb explodes after {@value #BOMB_SECONDS} seconds
+     * and destroys walls next to it, the border of the maze stays.
+     *
+     * @return true if the bomb was placed
+     */
+    public boolean placeBomb() {
+        PacmanObject pacman = (PacmanObject) this.maze.getPacMan();
+        if (pacman.getAvailableBombs() <= 0) {
+            return false;
+        }
+        pacman.setBombCount(pacman.getAvailableBombs() - 1);
+        Field field = pacman.getField();
+        // the engine sets the countdown, the bomb is logged once with it
+        BombObject bomb = new BombObject(field, null);
+        bomb.setTimer(BOMB_SECONDS);
+        if (this.logObserver != null) {
+            bomb.addLogObserver(this.logObserver);
+            bomb.notifyLogObservers();
+        }
+        try {
+            field.put(bomb);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        new Countdown(bomb).event.after(GameClock.ticks(1));
+        return true;
+    }
+
+    /**
+     * Makes ghosts eatable and schedules the end of the eatable phase.
+     */
+    private void startEatable() {
+        this.maze.getGhostPopulation().setAllEatable(true);
+        this.eatableEnd.after(EATABLE_DURATION);
+    }
+
+    /**
+     * Makes ghosts uneatable and schedules the next eatable phase.
+     */
+    private void endEatable() {
+        this.maze.getGhostPopulation().setAllEatable(false);
+        this.eatableStart.after(EATABLE_INTERVAL + EATABLE_DELAY);
+    }
+
+    /**
+     * Destroys walls next to a bomb, the border of the maze stays.
+     *
+     * @param bomb bomb that explodes
+     */
+    private void explode(BombObject bomb) {
+        Field bombField = bomb.getField();
+        for (Field.Direction dir : Field.Direction.values()) {
+            Field field = bombField.nextField(dir);
+            if (field.canMove()) continue;
+            if (field.getRow() != 0 && field.getCol() != 0 && field.getRow() != this.maze.numRows() - 1
+                    && field.getCol() != this.maze.numCols() - 1) {
+                this.maze.swapFields(field, new PathField(field.getRow(), field.getCol()));
+            }
+        }
+    }
+
+    /**
+     * Moves all ghosts and checks collisions with pacman.
+     *
+     * @throws GameException when pacman loses the game
+     */
+    private void moveGhosts() throws GameException {
+        this.flowField.update(this.maze.getPacMan().getField().getCellId());
+        this.situation.update(this.maze, this.flowField, this.pathFinder.getJunctionGraph());
+        this.ghostPlanner.decide(this.maze, this.situation);
+        this.ghostPlanner.apply();
+        checkCollision();
+    }
+
+    /**
+     * Moves pacman along its path or in its direction, checks collisions, the win and opens the target.
+     *
+     * @throws GameException when pacman loses or wins the game
+     */
+    private void movePacman() throws GameException {
+        MazeObject pacman = this.maze.getPacMan();
+        if (!this.pacmanPath.isEmpty() && this.pacmanPathVersion != this.maze.topologyVersion()) {
+            replanPacmanPath();
+        }
+        if (!this.pacmanPath.isEmpty()) {
+            pacman.setDirection(this.pacmanPath.remove(0));
+        }
+        pacman.move(pacman.getDirection());
+        checkCollision();
+        if (pacman.getField() instanceof TargetField && this.maze.canComplete()) {
+            throw new GameException(GameException.TypeOfException.CompletedGame);
+        }
+        if (this.maze.canComplete()) {
+            ((TargetField) this.maze.getTarget()).setOpen();
+        }
+    }
+
+    /**
+     * Plans path of pacman to its destination again after terrain changed. The incremental path finder keeps its
+     * search, so following changes only repair the affected part.
+     */
+    private void replanPacmanPath() {
+        if (this.replanner == null) {
+            this.replanner = new IncrementalPathFinder(this.maze);
+        }
+        this.pacmanPathVersion = this.maze.topologyVersion();
+        this.pacmanPath = this.replanner.findPath(this.maze.getPacMan().getField().getCellId(), this.pacmanDestination);
+    }
+
+    /**
+     * Checks if Pacman and Ghosts are on the same field. If so, checks if Ghost is eatable. If yes, Ghost is moved
+     * to start. If not, Pacman and Ghosts are moved to start.
+     *
+     * @throws GameException pacman looses all of lives
+     */
+    private void checkCollision() throws GameException {
+        if (this.collisions.length < this.maze.ghostCount()) {
+            this.collisions = new int[this.maze.ghostCount()];
+        }
+        int count = this.maze.collectCollisions(this.collisions);
+        GhostPopulation ghosts = this.maze.getGhostPopulation();
+        for (int i = 0; i < count; i++) {
+            if (ghosts.isEatable(this.collisions[i])) {
+                PacmanObject pacman = (PacmanObject) this.maze.getPacMan();
+                pacman.setScore(pacman.getScore() + 100);
+                ghosts.moveToStart(this.collisions[i]);
+            } else {
+                this.maze.moveObjectsToStart();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Checks that a speed can be reached by moving at most once per tick.
+     *
+     * @param speed fields per second
+     * @return the speed
+     */
+    private static double checkSpeed(double speed) {
+        if (!(speed > 0) || speed > TICKS_PER_SECOND) {
+            throw new IllegalArgumentException("Speed must be positive and at most " + TICKS_PER_SECOND);
+        }
+        return speed;
+    }
+
+    /**
+     * Move repeated with a speed in fields per second. Move number n after the start or after the last change of
+     * speed runs in tick origin + ceil(n * {@value #TICKS_PER_SECOND} / speed), so fractional speeds do not drift.
+     */
+    private final class Mover {
+        /**
+         * Event of the next move
+         */
+        private final GameScheduler.Event event;
+        /**
+         * Action of one move
+         */
+        private final GameScheduler.Action move;
+        /**
+         * Fields per second
+         */
+        private double speed;
+        /**
+         * Tick of move number 0
+         */
+        private long origin;
+        /**
+         * Number of moves since the origin
+         */
+        private long moves;
+
+        /**
+         * Constructor.
+         *
+         * @param priority priority of the moves
+         * @param speed    fields per second
+         * @param move     action of one move
+         */
+        Mover(int priority, double speed, GameScheduler.Action move) {
+            this.speed = speed;
+            this.move = move;
+            this.event = scheduler.event(priority, this::run);
+        }
+
+        /**
+         * Runs one move and schedules the next one.
+         *
+         * @throws GameException when the move ends the game
+         */
+        private void run() throws GameException {
+            this.move.run();
+            this.moves++;
+            this.event.at(this.origin + (long) Math.ceil(this.moves * TICKS_PER_SECOND / this.speed));
+        }
+
+        /**
+         * Schedules the first move to the current tick.
+         */
+        void start() {
+            this.origin = scheduler.tick();
+            this.moves = 0;
+            this.event.at(this.origin);
+        }
+
+        /**
+         * Changes the speed, the next move keeps its tick and following moves use the new speed.
+         *
+         * @param speed fields per second
+         */
+        void setSpeed(double speed) {
+            this.speed = speed;
+            if (this.event.isScheduled()) {
+                this.origin = this.event.tick();
+                this.moves = 0;
+            }
+        }
+    }
+
+    /**
+     * Countdown of a placed bomb, it counts down every second and explodes the bomb when its time is up.
+     */
+    private final class Countdown {
+        /**
+         * Placed bomb
+         */
+        private final BombObject bomb;
+        /**
+         * Event of the next second
+         */
+        private final GameScheduler.Event event;
+
+        /**
+         * Constructor.
+         *
+         * @param bomb placed bomb
+         */
+        Countdown(BombObject bomb) {
+            this.bomb = bomb;
+            this.event = scheduler.event(BOMB_PRIORITY, this::run);
+        }
+
+        /**
+         * Counts the bomb down by one second.
+         */
+        private void run() {
+            this.bomb.setTimer(this.bomb.getTimeToDetonation() - 1);
+            if (this.bomb.getTimeToDetonation() > 0) {
+                this.event.after(GameClock.ticks(1));
+            } else {
+                explode(this.bomb);
+            }
+        }
+    }
+}
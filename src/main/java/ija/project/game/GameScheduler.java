@@ -0,0 +1,239 @@
+package ija.project.game;
+
+/**
+ * Class running events of a game on ticks of the game clock. Events are kept in a hashed timing wheel, every slot
+ * holds events of ticks with the same remainder sorted by priority and by order of scheduling, so events of one tick
+ * always run in the same order. Nothing runs between calls of {@link #advance()}, so the game is paused simply by
+ * not advancing it. Events are reused when they are scheduled again, periodic events do not allocate.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class GameScheduler {
+    /**
+     * Number of slots of the wheel, events further in the future wait for more rounds of the wheel
+     */
+    public static final int WHEEL_SIZE = 1024;
+
+    /**
+     * Action of an event.
+     */
+    @FunctionalInterface
+    public interface Action {
+        /**
+         * Runs the action, it may schedule events including itself.
+         *
+         * @throws GameException when the game ends
+         */
+        void run() throws GameException;
+    }
+
+    /**
+     * Event of the scheduler. An event is scheduled at most once at a time, scheduling it again moves it.
+     */
+    public final class Event {
+        /**
+         * Action of the event
+         */
+        private final Action action;
+        /**
+         * Events of the same tick with lower priority run first
+         */
+        private final int priority;
+        /**
+         * Tick in which the event runs
+         */
+        private long tick;
+        /**
+         * Order of scheduling, events of the same tick and priority run in this order
+         */
+        private long sequence;
+        /**
+         * Next event of the same slot
+         */
+        private Event next;
+        /**
+         * Whether the event is in the wheel
+         */
+        private boolean scheduled;
+
+        /**
+         * Constructor.
+         *
+         * @param priority events of the same tick with lower priority run first
+         * @param action   action of the event
+         */
+        private Event(int priority, Action action) {
+            this.priority = priority;
+            this.action = action;
+        }
+
+        /**
+         * Schedules the event to a tick.
+         *
+         * @param tick tick in which the event runs, not before the current tick
+         * @return this event
+         */
+        public Event at(long tick) {
+            if (tick < GameScheduler.this.tick) {
+                throw new IllegalArgumentException("Tick " + tick + " has already passed");
+            }
+            cancel();
+            this.tick = tick;
+            this.sequence = GameScheduler.this.sequence++;
+            insert(this);
+            return this;
+        }
+
+        /**
+         * Schedules the event to a number of ticks after the current tick.
+         *
+         * @param delay number of ticks, 0 runs the event in the current tick
+         * @return this event
+         */
+        public Event after(long delay) {
+            return at(GameScheduler.this.tick + delay);
+        }
+
+        /**
+         * Removes the event from the scheduler if it is scheduled.
+         */
+        public void cancel() {
+            if (this.scheduled) {
+                remove(this);
+            }
+        }
+
+        /**
+         * Checks whether the event is scheduled.
+         *
+         * @return true if the event waits for its tick
+         */
+        public boolean isScheduled() {
+            return this.scheduled;
+        }
+
+        /**
+         * Returns the tick of the event.
+         *
+         * @return tick in which the event runs or ran last
+         */
+        public long tick() {
+            return this.tick;
+        }
+    }
+
+    /**
+     * First event of every slot
+     */
+    private final Event[] wheel = new Event[WHEEL_SIZE];
+    /**
+     * Current tick, the next one to be run by {@link #advance()}
+     */
+    private long tick;
+    /**
+     * Counter of scheduling order
+     */
+    private long sequence;
+    /**
+     * Number of scheduled events
+     */
+    private int size;
+
+    /**
+     * Creates an event that is not scheduled yet.
+     *
+     * @param priority events of the same tick with lower priority run first
+     * @param action   action of the event
+     * @return new event
+     */
+    public Event event(int priority, Action action) {
+        return new Event(priority, action);
+    }
+
+    /**
+     * Returns the current tick.
+     *
+     * @return number of ticks run so far
+     */
+    public long tick() {
+        return this.tick;
+    }
+
+    /**
+     * Returns number of scheduled events.
+     *
+     * @return number of events
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Runs all events of the current tick and moves to the next tick. Events scheduled to the current tick by
+     * running events run in the same call. If an event throws, events of the tick that did not run yet stay
+     * scheduled and the tick does not move.
+     *
+     * @throws GameException when an event ends the game
+     */
+    public void advance() throws GameException {
+        int slot = (int) (this.tick & (WHEEL_SIZE - 1));
+        for (;;) {
+            Event event = this.wheel[slot];
+            while (event != null && event.tick != this.tick) {
+                event = event.next;
+            }
+            if (event == null) {
+                break;
+            }
+            remove(event);
+            event.action.run();
+        }
+        this.tick++;
+    }
+
+    /**
+     * Inserts an event into its slot after events with lower or equal priority.
+     *
+     * @param event event to insert
+     */
+    private void insert(Event event) {
+        int slot = (int) (event.tick & (WHEEL_SIZE - 1));
+        Event previous = null;
+        Event current = this.wheel[slot];
+        while (current != null && (current.priority < event.priority
+                || current.priority == event.priority && current.sequence < event.sequence)) {
+            previous = current;
+            current = current.next;
+        }
+        event.next = current;
+        if (previous == null) {
+            this.wheel[slot] = event;
+        } else {
+            previous.next = event;
+        }
+        event.scheduled = true;
+        this.size++;
+    }
+
+    /**
+     * Removes a scheduled event from its slot.
+     *
+     * @param event event to remove
+     */
+    private void remove(Event event) {
+        int slot = (int) (event.tick & (WHEEL_SIZE - 1));
+        Event previous = null;
+        Event current = this.wheel[slot];
+        while (current != event) {
+            previous = current;
+            current = current.next;
+        }
+        if (previous == null) {
+            this.wheel[slot] = event.next;
+        } else {
+            previous.next = event.next;
+        }
+        event.next = null;
+        event.scheduled = false;
+        this.size--;
+    }
+}
@@ -5,44 +5,23 @@ import ija.project.common.MazeObject;
 import javafx.scene.paint.Color;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Objects;
+import java.util.SplittableRandom;
 
 /**
- * Class representing ghost object. Ghosts are moving on the field and can be eaten by pacman.
+ * Class representing ghost object. Ghosts are moving on the field and can be eaten by pacman. The object is a view
+ * of one ghost of the {@link GhostPopulation} of its maze, which holds the state of the ghost.
  * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
  */
 public class GhostObject extends AbstractObservable implements MazeObject {
     /**
-     * Current field in which the ghost is located.
+     * Population holding the state of the ghost.
      */
-    private Field field;
-    /**
-     * Ghost starting field
-     */
-    private final PathField startField;
+    private final GhostPopulation population;
     /**
      * ID of the ghost.
      */
     private final int id;
-    /**
-     * Color of the ghost.
-     */
-    private final Color color;
-    /**
-     * Direction in which the ghost is moving.
-     */
-    private Field.Direction direction;
-    /**
-     * Boolean value indicating whether the ghost is eatable.
-     */
-    private boolean isEatable = false;
-    /**
-     * Lock for the ghost object, to ensure that only one thread can access move
-     * method at a time.
-     */
-    ReadWriteLock lock = new ReentrantReadWriteLock();
     /**
      * List of colors for ghosts. If there are more ghosts than colors, the colors
      * are reused.
@@ -58,17 +37,15 @@ public class GhostObject extends AbstractObservable implements MazeObject {
     };
 
     /**
-     * Constructor for GhostObject.
+     * Constructor for GhostObject. The ghost is added to the population of the maze of the field.
      *
      * @param field field on which the object is located
      * @param id    ID of the ghost
      */
     public GhostObject(PathField field, int id) {
         this.id = id;
-        this.field = field;
-        this.startField = field;
-        this.color = colors.get(this.id % colors.size());
-        this.direction = Field.Direction.values()[new Random().nextInt(Field.Direction.values().length)];
+        this.population = field.getMaze().getGhostPopulation();
+        this.population.add(this, id, field.getCellId());
     }
 
     /**
@@ -80,8 +57,7 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      */
     @Override
     public boolean canMove(Field.Direction dir) {
-        Field nextField = field.nextField(dir);
-        return nextField instanceof PathField;
+        return population.getMaze().canMove(population.cell(id), dir);
     }
 
     /**
@@ -93,23 +69,7 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      */
     @Override
     public boolean move(Field.Direction dir) throws GameException {
-        try {
-            lock.writeLock().lock();
-            if (!canMove(dir)) {
-                lock.writeLock().unlock();
-                return false;
-            } else {
-                PathField nextField = (PathField) field.nextField(dir);
-                this.field.remove(this);
-                if (nextField.put(this)) {
-                    this.field = nextField;
-                }
-            }
-        } finally {
-            lock.writeLock().unlock();
-        }
-        notifyLogObservers();
-        return true;
+        return population.move(id, dir);
     }
 
     /**
@@ -121,20 +81,7 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      */
     @Override
     public boolean move(Field field) throws GameException {
-        try {
-            lock.writeLock().lock();
-            if (field.canMove()) {
-                this.field.remove(this);
-                if (((PathField) field).put(this)) {
-                    this.field = field;
-                }
-            } else {
-                return false;
-            }
-        } finally {
-            lock.writeLock().unlock();
-        }
-        return true;
+        return population.move(id, field);
     }
 
     /**
@@ -142,16 +89,7 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      */
     @Override
     public void moveToStart() throws GameException {
-        try {
-            lock.writeLock().lock();
-            this.field.remove(this);
-            this.startField.put(this);
-            this.field = this.startField;
-            notifyObservers();
-            notifyLogObservers();
-        } finally {
-            lock.writeLock().unlock();
-        }
+        population.moveToStart(id);
     }
 
     /**
@@ -160,7 +98,7 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      * @return Field on which the object is located.
      */
     public Field getField() {
-        return field;
+        return population.getMaze().getField(population.cell(id));
     }
 
     /**
@@ -187,7 +125,7 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      */
     @Override
     public Field.Direction getDirection() {
-        return direction;
+        return population.direction(id);
     }
 
     /**
@@ -198,8 +136,7 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      */
     @Override
     public void setDirection(Field.Direction dir) {
-        direction = dir;
-        notifyObservers();
+        population.setDirection(id, dir);
     }
 
     /**
@@ -218,7 +155,7 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      * @return PathField start field.
      */
     public PathField getStartField() {
-        return this.startField;
+        return (PathField) population.getMaze().getField(population.startCell(id));
     }
 
     /**
@@ -227,7 +164,7 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      * @param eatable New eatable state of the ghost.
      */
     public void setEatable(boolean eatable) {
-        isEatable = eatable;
+        population.setEatable(id, eatable);
     }
 
     /**
@@ -236,7 +173,44 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      * @return True if ghost is eatable, false otherwise.
      */
     public boolean isEatable() {
-        return isEatable;
+        return population.isEatable(id);
+    }
+
+    /**
+     * Returns the strategy choosing directions of the ghost.
+     *
+     * @return strategy of the ghost
+     */
+    public GhostStrategy getStrategy() {
+        return population.strategy(id);
+    }
+
+    /**
+     * Sets the strategy choosing directions of the ghost. The strategy is added to the table of the population if
+     * it is not there yet.
+     *
+     * @param strategy new strategy of the ghost
+     */
+    public void setStrategy(GhostStrategy strategy) {
+        population.setStrategyId(id, population.addStrategy(Objects.requireNonNull(strategy)));
+    }
+
+    /**
+     * Returns the random stream of the ghost.
+     *
+     * @return random stream
+     */
+    public SplittableRandom random() {
+        return population.random(id);
+    }
+
+    /**
+     * Returns the population holding the state of the ghost.
+     *
+     * @return population of the maze
+     */
+    public GhostPopulation getPopulation() {
+        return population;
     }
 
     /**
@@ -254,6 +228,6 @@ public class GhostObject extends AbstractObservable implements MazeObject {
      * @return Color of the ghost.
      */
     public Color getColor() {
-        return color;
+        return colors.get(id % colors.size());
     }
 }
@@ -0,0 +1,157 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class moving ghosts of a maze in two phases. In the decide phase strategies of all ghosts choose their directions
+ * from the same state of the game, in parallel when there are many ghosts. In the apply phase ghosts are moved one
+ * after another in the order of their ids. Every ghost draws from its own random stream split from the seed of the
+ * game by {@link GhostPopulation#seed}, so the same seed gives the same moves regardless of the number of threads.
+ * Both phases work on the arrays of the {@link GhostPopulation}.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class GhostPlanner {
+    /**
+     * Minimal number of ghosts decided in one task, fewer ghosts are decided on the calling thread
+     */
+    public static final int PARALLEL_THRESHOLD = 256;
+    /**
+     * All directions, cached so that lookups do not allocate
+     */
+    private static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+
+    /**
+     * Pool running the decide phase
+     */
+    private final ForkJoinPool pool;
+    /**
+     * Ghosts of the current tick
+     */
+    private GhostPopulation ghosts;
+    /**
+     * Ordinal of the direction chosen for every ghost in the decide phase
+     */
+    private byte[] decisions = new byte[0];
+    /**
+     * Number of ghosts decided in the current tick
+     */
+    private int count;
+
+    /**
+     * Constructor.
+     *
+     * @param pool pool running the decide phase
+     */
+    public GhostPlanner(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Constructor with the common pool.
+     */
+    public GhostPlanner() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Chooses directions of all ghosts. Nothing in the game is changed except random streams of the ghosts.
+     *
+     * @param maze      maze of the game
+     * @param situation state of the game updated for the current tick
+     */
+    public void decide(Maze maze, GhostStrategy.Situation situation) {
+        this.ghosts = maze.getGhostPopulation();
+        this.count = this.ghosts.size();
+        if (this.decisions.length < this.count) {
+            this.decisions = new byte[this.count];
+        }
+        if (this.count < 2 * PARALLEL_THRESHOLD) {
+            decide(situation, 0, this.count);
+        } else {
+            this.pool.invoke(new DecideTask(situation, 0, this.count));
+        }
+    }
+
+    /**
+     * Moves all ghosts in the directions chosen by {@link #decide}.
+     *
+     * @throws GameException if a move ends the game
+     */
+    public void apply() throws GameException {
+        if (this.count > 0) {
+            this.ghosts.moveAll(this.decisions, this.count);
+        }
+    }
+
+    /**
+     * Returns the direction chosen for a ghost in the current tick.
+     *
+     * @param id ID of the ghost
+     * @return direction
+     */
+    public Field.Direction decision(int id) {
+        if (id < 0 || id >= this.count) {
+            throw new IndexOutOfBoundsException(id);
+        }
+        return DIRECTIONS[this.decisions[id]];
+    }
+
+    /**
+     * Chooses directions of a range of ghosts.
+     *
+     * @param situation state of the game
+     * @param from      index of the first ghost
+     * @param to        index after the last ghost
+     */
+    private void decide(GhostStrategy.Situation situation, int from, int to) {
+        GhostPopulation ghosts = this.ghosts;
+        for (int id = from; id < to; id++) {
+            this.decisions[id] = (byte) ghosts.strategy(id).choose(ghosts, id, situation).ordinal();
+        }
+    }
+
+    /**
+     * Task choosing directions of a range of ghosts, ranges longer than {@link #PARALLEL_THRESHOLD} are split.
+     */
+    private final class DecideTask extends RecursiveAction {
+        /**
+         * State of the game
+         */
+        private final GhostStrategy.Situation situation;
+        /**
+         * Index of the first ghost
+         */
+        private final int from;
+        /**
+         * Index after the last ghost
+         */
+        private final int to;
+
+        /**
+         * Constructor.
+         *
+         * @param situation state of the game
+         * @param from      index of the first ghost
+         * @param to        index after the last ghost
+         */
+        DecideTask(GhostStrategy.Situation situation, int from, int to) {
+            this.situation = situation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecideTask(situation, from, middle), new DecideTask(situation, middle, to));
+            } else {
+                decide(situation, from, to);
+            }
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Class storing state of all ghosts of a maze in parallel arrays indexed by ghost id. {@link GhostObject} is only a
+ * view of one index, so a tick over thousands of ghosts walks a few primitive arrays instead of ghost objects.
+ * Strategies are kept in a table shared by ghosts and every ghost stores the index of its strategy.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class GhostPopulation {
+    /**
+     * Cell of a ghost that was not placed yet
+     */
+    public static final int NO_CELL = -1;
+    /**
+     * Maximal number of strategies in the table
+     */
+    public static final int MAX_STRATEGIES = Byte.MAX_VALUE + 1;
+    /**
+     * Index of the default strategy, a random walk, in the table
+     */
+    public static final int DEFAULT_STRATEGY = 0;
+    /**
+     * Strategies of the classic personalities assigned by {@link #assignPersonalities()}, strategies are stateless
+     * so one instance serves all populations
+     */
+    private static final GhostStrategy[] PERSONALITIES = {
+            new TargetingStrategy(TargetingStrategy.Personality.CHASER),
+            new TargetingStrategy(TargetingStrategy.Personality.AMBUSHER),
+            new TargetingStrategy(TargetingStrategy.Personality.FLANKER),
+            new TargetingStrategy(TargetingStrategy.Personality.SHY)
+    };
+    /**
+     * All directions, cached so that lookups do not allocate
+     */
+    private static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+
+    /**
+     * Maze of the ghosts
+     */
+    private final Maze maze;
+    /**
+     * Number of ghosts
+     */
+    private int size;
+    /**
+     * View of every ghost
+     */
+    private GhostObject[] views = new GhostObject[0];
+    /**
+     * Current cell of every ghost
+     */
+    private int[] cells = new int[0];
+    /**
+     * Cell of every ghost before its last move, {@link #NO_CELL} if the ghost did not move yet
+     */
+    private int[] previousCells = new int[0];
+    /**
+     * Start cell of every ghost
+     */
+    private int[] startCells = new int[0];
+    /**
+     * Ordinal of the direction of every ghost
+     */
+    private byte[] directions = new byte[0];
+    /**
+     * Eatable state of every ghost
+     */
+    private boolean[] eatable = new boolean[0];
+    /**
+     * Index of the strategy of every ghost in {@link #strategies}
+     */
+    private byte[] strategyIds = new byte[0];
+    /**
+     * Random stream of every ghost
+     */
+    private SplittableRandom[] randoms = new SplittableRandom[0];
+    /**
+     * Table of strategies
+     */
+    private final GhostStrategy[] strategies = new GhostStrategy[MAX_STRATEGIES];
+    /**
+     * Number of strategies in the table
+     */
+    private int strategyCount;
+
+    /**
+     * Constructor. The table starts with the random walk all ghosts get by default, the same wandering ghosts had
+     * before strategies could be changed.
+     *
+     * @param maze maze of the ghosts
+     */
+    GhostPopulation(Maze maze) {
+        this.maze = maze;
+        addStrategy(new RandomWalkStrategy());
+    }
+
+    /**
+     * Adds a ghost. Called by {@link GhostObject} when it is created, the ghost is placed by putting it on its
+     * start field.
+     *
+     * @param view      view of the ghost
+     * @param id        ID of the ghost
+     * @param startCell cell id of the start field
+     */
+    void add(GhostObject view, int id, int startCell) {
+        if (id >= this.views.length) {
+            int length = Math.max(id + 1, this.views.length * 2);
+            this.views = Arrays.copyOf(this.views, length);
+            this.cells = Arrays.copyOf(this.cells, length);
+            this.previousCells = Arrays.copyOf(this.previousCells, length);
+            this.startCells = Arrays.copyOf(this.startCells, length);
+            this.directions = Arrays.copyOf(this.directions, length);
+            this.eatable = Arrays.copyOf(this.eatable, length);
+            this.strategyIds = Arrays.copyOf(this.strategyIds, length);
+            this.randoms = Arrays.copyOf(this.randoms, length);
+        }
+        this.views[id] = view;
+        this.cells[id] = startCell;
+        this.previousCells[id] = NO_CELL;
+        this.startCells[id] = startCell;
+        this.eatable[id] = false;
+        this.strategyIds[id] = DEFAULT_STRATEGY;
+        reseed(id, new SplittableRandom(id));
+        this.size = Math.max(this.size, id + 1);
+    }
+
+    /**
+     * Records that a ghost was put on a cell. Called by the maze when a field reports the ghost.
+     *
+     * @param id   ID of the ghost
+     * @param cell cell id
+     */
+    void entered(int id, int cell) {
+        this.previousCells[id] = this.cells[id];
+        this.cells[id] = cell;
+    }
+
+    /**
+     * Returns the maze of the ghosts.
+     *
+     * @return maze
+     */
+    public Maze getMaze() {
+        return this.maze;
+    }
+
+    /**
+     * Returns number of ghosts.
+     *
+     * @return number of ghosts
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the view of a ghost.
+     *
+     * @param id ID of the ghost
+     * @return ghost object
+     */
+    public GhostObject view(int id) {
+        return this.views[id];
+    }
+
+    /**
+     * Returns the current cell of a ghost.
+     *
+     * @param id ID of the ghost
+     * @return cell id
+     */
+    public int cell(int id) {
+        return this.cells[id];
+    }
+
+    /**
+     * Returns the cell of a ghost before its last move.
+     *
+     * @param id ID of the ghost
+     * @return cell id or {@link #NO_CELL} if the ghost did not move yet
+     */
+    public int previousCell(int id) {
+        return this.previousCells[id];
+    }
+
+    /**
+     * Returns the start cell of a ghost.
+     *
+     * @param id ID of the ghost
+     * @return cell id
+     */
+    public int startCell(int id) {
+        return this.startCells[id];
+    }
+
+    /**
+     * Returns the direction of a ghost.
+     *
+     * @param id ID of the ghost
+     * @return direction
+     */
+    public Field.Direction direction(int id) {
+        return DIRECTIONS[this.directions[id]];
+    }
+
+    /**
+     * Sets the direction of a ghost and notifies observers of its view.
+     *
+     * @param id  ID of the ghost
+     * @param dir new direction
+     */
+    public void setDirection(int id, Field.Direction dir) {
+        this.directions[id] = (byte) dir.ordinal();
+        this.views[id].notifyObservers();
+    }
+
+    /**
+     * Returns the eatable state of a ghost.
+     *
+     * @param id ID of the ghost
+     * @return true if the ghost is eatable
+     */
+    public boolean isEatable(int id) {
+        return this.eatable[id];
+    }
+
+    /**
+     * Sets the eatable state of a ghost.
+     *
+     * @param id      ID of the ghost
+     * @param eatable new eatable state
+     */
+    public void setEatable(int id, boolean eatable) {
+        this.eatable[id] = eatable;
+    }
+
+    /**
+     * Sets the eatable state of all ghosts.
+     *
+     * @param eatable new eatable state
+     */
+    public void setAllEatable(boolean eatable) {
+        Arrays.fill(this.eatable, 0, this.size, eatable);
+    }
+
+    /**
+     * Adds a strategy to the table, a strategy that is already there is not added again.
+     *
+     * @param strategy strategy
+     * @return index of the strategy in the table
+     */
+    public int addStrategy(GhostStrategy strategy) {
+        for (int i = 0; i < this.strategyCount; i++) {
+            if (this.strategies[i] == strategy) {
+                return i;
+            }
+        }
+        if (this.strategyCount == MAX_STRATEGIES) {
+            throw new IllegalStateException("Too many ghost strategies");
+        }
+        this.strategies[this.strategyCount] = strategy;
+        return this.strategyCount++;
+    }
+
+    /**
+     * Gives ghosts the classic personalities of {@link TargetingStrategy} in the order of their ids, every fifth
+     * ghost keeps the random walk. This is a harder setting than the default, where all ghosts walk randomly.
+     */
+    public void assignPersonalities() {
+        int count = PERSONALITIES.length + 1;
+        for (int id = 0; id < this.size; id++) {
+            int personality = id % count;
+            setStrategyId(id, personality < PERSONALITIES.length
+                    ? addStrategy(PERSONALITIES[personality]) : DEFAULT_STRATEGY);
+        }
+    }
+
+    /**
+     * Returns number of strategies in the table.
+     *
+     * @return number of strategies
+     */
+    public int strategyCount() {
+        return this.strategyCount;
+    }
+
+    /**
+     * Returns the index of the strategy of a ghost.
+     *
+     * @param id ID of the ghost
+     * @return index in the table of strategies
+     */
+    public int strategyId(int id) {
+        return this.strategyIds[id];
+    }
+
+    /**
+     * Sets the strategy of a ghost.
+     *
+     * @param id         ID of the ghost
+     * @param strategyId index in the table of strategies
+     */
+    public void setStrategyId(int id, int strategyId) {
+        if (strategyId < 0 || strategyId >= this.strategyCount) {
+            throw new IndexOutOfBoundsException(strategyId);
+        }
+        this.strategyIds[id] = (byte) strategyId;
+    }
+
+    /**
+     * Returns the strategy of a ghost.
+     *
+     * @param id ID of the ghost
+     * @return strategy
+     */
+    public GhostStrategy strategy(int id) {
+        return this.strategies[this.strategyIds[id]];
+    }
+
+    /**
+     * Returns the random stream of a ghost.
+     *
+     * @param id ID of the ghost
+     * @return random stream
+     */
+    public SplittableRandom random(int id) {
+        return this.randoms[id];
+    }
+
+    /**
+     * Replaces the random stream of a ghost and draws its initial direction from it.
+     *
+     * @param id     ID of the ghost
+     * @param random new random stream
+     */
+    public void reseed(int id, SplittableRandom random) {
+        this.randoms[id] = random;
+        this.directions[id] = (byte) random.nextInt(DIRECTIONS.length);
+    }
+
+    /**
+     * Gives every ghost its random stream for a new game. Streams are split from the seed in the order of ghost ids.
+     *
+     * @param seed seed of the game
+     */
+    public void seed(long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int id = 0; id < this.size; id++) {
+            reseed(id, root.split());
+        }
+    }
+
+    /**
+     * Moves a ghost in a direction if possible.
+     *
+     * @param id  ID of the ghost
+     * @param dir direction of the move
+     * @return true if the ghost moved
+     * @throws GameException if the move ends the game
+     */
+    public boolean move(int id, Field.Direction dir) throws GameException {
+        int from = this.cells[id];
+        if (!this.maze.canMove(from, dir)) {
+            return false;
+        }
+        GhostObject view = this.views[id];
+        this.maze.getField(from).remove(view);
+        ((PathField) this.maze.getField(this.maze.neighbour(from, dir))).put(view);
+        view.notifyLogObservers();
+        return true;
+    }
+
+    /**
+     * Moves a ghost to a field if it is passable.
+     *
+     * @param id    ID of the ghost
+     * @param field target field
+     * @return true if the ghost moved
+     * @throws GameException if the move ends the game
+     */
+    public boolean move(int id, Field field) throws GameException {
+        if (!field.canMove()) {
+            return false;
+        }
+        GhostObject view = this.views[id];
+        this.maze.getField(this.cells[id]).remove(view);
+        ((PathField) field).put(view);
+        return true;
+    }
+
+    /**
+     * Sets directions of the first ghosts and moves them in the order of their ids.
+     *
+     * @param decisions ordinal of the direction of every ghost
+     * @param count     number of ghosts to move
+     * @throws GameException if a move ends the game
+     */
+    public void moveAll(byte[] decisions, int count) throws GameException {
+        for (int id = 0; id < count; id++) {
+            Field.Direction dir = DIRECTIONS[decisions[id]];
+            setDirection(id, dir);
+            move(id, dir);
+        }
+    }
+
+    /**
+     * Moves a ghost to its start cell.
+     *
+     * @param id ID of the ghost
+     * @throws GameException if the move ends the game
+     */
+    public void moveToStart(int id) throws GameException {
+        GhostObject view = this.views[id];
+        this.maze.getField(this.cells[id]).remove(view);
+        ((PathField) this.maze.getField(this.startCells[id])).put(view);
+        view.notifyObservers();
+        view.notifyLogObservers();
+    }
+
+    /**
+     * Moves all ghosts to their start cells.
+     *
+     * @throws GameException if a move ends the game
+     */
+    public void moveAllToStart() throws GameException {
+        for (int id = 0; id < this.size; id++) {
+            moveToStart(id);
+        }
+    }
+}
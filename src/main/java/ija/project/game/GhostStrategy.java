@@ -0,0 +1,126 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+/**
+ * Interface of a ghost behaviour choosing the direction of the next move of a ghost. Strategies are kept in the table
+ * of a {@link GhostPopulation} and shared by all ghosts with the same strategy id, so they must not keep state of a
+ * decision. Strategies are asked once per ghost tick and should not allocate. They must not change the game and
+ * must draw random numbers only from {@link GhostPopulation#random(int)}, then all ghosts can decide in parallel
+ * with reproducible results.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public interface GhostStrategy {
+    /**
+     * Chooses the direction in which the ghost moves next.
+     *
+     * @param ghosts    population of the ghosts
+     * @param id        ID of the ghost to move
+     * @param situation state of the game shared by all ghosts in the current tick
+     * @return direction of the next move, never null
+     */
+    Field.Direction choose(GhostPopulation ghosts, int id, Situation situation);
+
+    /**
+     * State of the game read by strategies. One instance is updated before the ghosts move and shared by all of
+     * them, so reading it does not allocate.
+     */
+    final class Situation {
+        /**
+         * Maze of the game
+         */
+        private Maze maze;
+        /**
+         * Distances to pacman, may be null
+         */
+        private FlowField flowField;
+        /**
+         * Junction graph of the maze, may be null
+         */
+        private JunctionGraph junctions;
+        /**
+         * Cell id of pacman
+         */
+        private int pacmanCell;
+        /**
+         * Direction of pacman
+         */
+        private Field.Direction pacmanDirection;
+        /**
+         * Cell id of the first ghost, other ghosts may coordinate with it
+         */
+        private int leaderCell;
+
+        /**
+         * Reads the state of the game before ghosts move.
+         *
+         * @param maze      maze of the game
+         * @param flowField distances to pacman or null
+         * @param junctions junction graph of the maze or null
+         */
+        public void update(Maze maze, FlowField flowField, JunctionGraph junctions) {
+            this.maze = maze;
+            this.flowField = flowField != null && flowField.getMaze() == maze ? flowField : null;
+            this.junctions = junctions != null && junctions.getMaze() == maze ? junctions : null;
+            this.pacmanCell = maze.getPacMan().getField().getCellId();
+            this.pacmanDirection = maze.getPacMan().getDirection();
+            GhostPopulation ghosts = maze.getGhostPopulation();
+            this.leaderCell = ghosts.size() > 0 ? ghosts.cell(0) : this.pacmanCell;
+        }
+
+        /**
+         * Returns the maze of the game.
+         *
+         * @return maze
+         */
+        public Maze getMaze() {
+            return this.maze;
+        }
+
+        /**
+         * Returns distances to pacman.
+         *
+         * @return flow field or null if it is not available
+         */
+        public FlowField getFlowField() {
+            return this.flowField;
+        }
+
+        /**
+         * Returns the junction graph of the maze.
+         *
+         * @return junction graph or null if it is not available
+         */
+        public JunctionGraph getJunctions() {
+            return this.junctions;
+        }
+
+        /**
+         * Returns the cell of pacman.
+         *
+         * @return cell id
+         */
+        public int pacmanCell() {
+            return this.pacmanCell;
+        }
+
+        /**
+         * Returns the direction of pacman.
+         *
+         * @return direction
+         */
+        public Field.Direction pacmanDirection() {
+            return this.pacmanDirection;
+        }
+
+        /**
+         * Returns the cell of the first ghost.
+         *
+         * @return cell id, the cell of pacman if there are no ghosts
+         */
+        public int leaderCell() {
+            return this.leaderCell;
+        }
+    }
+}
@@ -0,0 +1,612 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Class finding paths in large mazes by hierarchical path finding (HPA*). The maze is split into square clusters,
+ * passable openings between neighbouring clusters become entrances and distances between entrances of every cluster
+ * are computed in advance. A search runs on the graph of entrances and its result is refined by searches inside
+ * single clusters, so its cost depends on the number of clusters on the way rather than on the size of the maze.
+ * <p>
+ * Paths between entrances stay inside clusters, so a path may be a few moves longer than the shortest one. The finder
+ * listens to terrain changes of the maze and rebuilds only the clusters around changed cells before the next search.
+ * Searches are serialized.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class HierarchicalPathFinder implements Maze.TerrainListener {
+    /**
+     * Default number of rows and columns of a cluster
+     */
+    public static final int DEFAULT_CLUSTER_SIZE = 16;
+    /**
+     * Length of an opening from which it gets an entrance at both ends instead of one in the middle
+     */
+    private static final int SPLIT_ENTRANCE = 6;
+    /**
+     * Distance of entrances that are not connected inside their cluster
+     */
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    /**
+     * All directions, cached so that searches do not allocate
+     */
+    private static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+
+    /**
+     * Maze in which paths are searched
+     */
+    private final Maze maze;
+    /**
+     * Number of columns of the maze
+     */
+    private final int cols;
+    /**
+     * Number of rows and columns of a cluster
+     */
+    private final int size;
+    /**
+     * Number of columns of clusters
+     */
+    private final int clusterCols;
+    /**
+     * Clusters row by row
+     */
+    private final Cluster[] clusters;
+    /**
+     * Entrances over the right border of every cluster, pairs of cell ids inside and outside the cluster
+     */
+    private final int[][] rightBorder;
+    /**
+     * Entrances over the bottom border of every cluster, pairs of cell ids inside and outside the cluster
+     */
+    private final int[][] bottomBorder;
+    /**
+     * Clusters whose entrance distances must be computed again
+     */
+    private final boolean[] dirty;
+    /**
+     * Clusters whose right border must be scanned again
+     */
+    private final boolean[] dirtyRight;
+    /**
+     * Clusters whose bottom border must be scanned again
+     */
+    private final boolean[] dirtyBottom;
+    /**
+     * Whether any cluster is dirty
+     */
+    private boolean changed;
+    /**
+     * Queue of local indices reused by searches inside clusters after the graph is built
+     */
+    private final int[] queue;
+
+    /**
+     * Constructor, builds the graph of entrances and starts listening to terrain changes of the maze.
+     *
+     * @param maze        maze in which paths are searched
+     * @param clusterSize number of rows and columns of a cluster
+     */
+    public HierarchicalPathFinder(Maze maze, int clusterSize) {
+        if (clusterSize < 2) {
+            throw new IllegalArgumentException("Cluster size must be at least 2");
+        }
+        this.maze = maze;
+        this.cols = maze.numCols();
+        this.size = clusterSize;
+        this.queue = new int[clusterSize * clusterSize];
+        int clusterRows = (maze.numRows() + clusterSize - 1) / clusterSize;
+        this.clusterCols = (this.cols + clusterSize - 1) / clusterSize;
+        this.clusters = new Cluster[clusterRows * this.clusterCols];
+        for (int k = 0; k < this.clusters.length; k++) {
+            int row0 = k / this.clusterCols * clusterSize;
+            int col0 = k % this.clusterCols * clusterSize;
+            this.clusters[k] = new Cluster(row0, col0, Math.min(row0 + clusterSize, maze.numRows()) - 1,
+                    Math.min(col0 + clusterSize, this.cols) - 1);
+        }
+        this.rightBorder = new int[this.clusters.length][];
+        this.bottomBorder = new int[this.clusters.length][];
+        this.dirty = new boolean[this.clusters.length];
+        this.dirtyRight = new boolean[this.clusters.length];
+        this.dirtyBottom = new boolean[this.clusters.length];
+        for (int k = 0; k < this.clusters.length; k++) {
+            scanRight(k);
+            scanBottom(k);
+        }
+        // clusters are independent once their borders are scanned
+        IntStream.range(0, this.clusters.length).parallel()
+                .forEach(k -> connect(k, new int[clusterSize * clusterSize]));
+        maze.addTerrainListener(this);
+    }
+
+    /**
+     * Constructor with clusters of {@value #DEFAULT_CLUSTER_SIZE} rows and columns.
+     *
+     * @param maze maze in which paths are searched
+     */
+    public HierarchicalPathFinder(Maze maze) {
+        this(maze, DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * Stops listening to terrain changes of the maze, the finder must not be used afterwards.
+     */
+    public void detach() {
+        this.maze.removeTerrainListener(this);
+    }
+
+    /**
+     * Returns the maze in which paths are searched.
+     *
+     * @return maze
+     */
+    public Maze getMaze() {
+        return this.maze;
+    }
+
+    /**
+     * Marks clusters around a changed cell for rebuilding. A cell on a cluster border also changes entrances of the
+     * neighbouring cluster.
+     *
+     * @param maze maze that changed
+     * @param cell cell id of the changed cell
+     */
+    @Override
+    public synchronized void terrainChanged(Maze maze, int cell) {
+        int row = cell / this.cols;
+        int col = cell % this.cols;
+        int k = clusterOf(cell);
+        Cluster cluster = this.clusters[k];
+        this.dirty[k] = true;
+        if (col == cluster.col1 && cluster.col1 < this.cols - 1) {
+            this.dirtyRight[k] = true;
+            this.dirty[k + 1] = true;
+        }
+        if (col == cluster.col0 && cluster.col0 > 0) {
+            this.dirtyRight[k - 1] = true;
+            this.dirty[k - 1] = true;
+        }
+        if (row == cluster.row1 && k + this.clusterCols < this.clusters.length) {
+            this.dirtyBottom[k] = true;
+            this.dirty[k + this.clusterCols] = true;
+        }
+        if (row == cluster.row0 && cluster.row0 > 0) {
+            this.dirtyBottom[k - this.clusterCols] = true;
+            this.dirty[k - this.clusterCols] = true;
+        }
+        this.changed = true;
+    }
+
+    /**
+     * Finds a path between two cells.
+     *
+     * @param ctx  search context not used by other threads
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return directions leading from the start to the destination, empty if the destination is not reachable
+     */
+    public synchronized List<Field.Direction> findPath(SearchContext ctx, int from, int to) {
+        List<Field.Direction> path = new ArrayList<>();
+        if (from == to || !search(ctx, from, to)) {
+            return path;
+        }
+        int[] links = ctx.links();
+        int count = 1;
+        for (int cell = to; cell != from; cell = links[cell]) {
+            count++;
+        }
+        int[] waypoints = new int[count];
+        for (int i = count - 1, cell = to; i >= 0; i--, cell = links[cell]) {
+            waypoints[i] = cell;
+        }
+        for (int i = 1; i < count; i++) {
+            refine(waypoints[i - 1], waypoints[i], path);
+        }
+        return path;
+    }
+
+    /**
+     * Returns length of the path between two cells that {@link #findPath} would return.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return number of moves or -1 if the destination is not reachable
+     */
+    public synchronized int distance(int from, int to) {
+        if (from == to) {
+            return this.maze.isPassable(from) ? 0 : -1;
+        }
+        SearchContext ctx = SearchContext.current();
+        return search(ctx, from, to) ? ctx.g[to] : -1;
+    }
+
+    /**
+     * Runs A* search on the graph of entrances. The start is connected to entrances of its cluster and every
+     * entrance of the destination cluster to the destination, by distances inside the cluster.
+     *
+     * @param ctx  search context
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return true if the destination was reached, false otherwise
+     */
+    private boolean search(SearchContext ctx, int from, int to) {
+        ctx.begin(this.maze.numCells());
+        if (!this.maze.isPassable(from) || !this.maze.isPassable(to)) {
+            return false;
+        }
+        rebuild();
+        int[] g = ctx.g;
+        int[] stamp = ctx.stamp;
+        int[] links = ctx.links();
+        Cluster startCluster = this.clusters[clusterOf(from)];
+        Cluster goalCluster = this.clusters[clusterOf(to)];
+        int[] startDist = new int[this.size * this.size];
+        int[] goalDist = new int[this.size * this.size];
+        explore(startCluster, from, startDist, null, this.queue);
+        explore(goalCluster, to, goalDist, null, this.queue);
+        int toRow = to / this.cols;
+        int toCol = to % this.cols;
+        g[from] = 0;
+        links[from] = from;
+        stamp[from] = ctx.open;
+        ctx.push(from, key(0, from, toRow, toCol));
+        while (!ctx.isEmpty()) {
+            int cell = ctx.pop();
+            stamp[cell] = ctx.closed;
+            ctx.expanded++;
+            if (cell == to) {
+                return true;
+            }
+            Cluster cluster = this.clusters[clusterOf(cell)];
+            if (cluster == goalCluster) {
+                int d = goalDist[cluster.local(cell, this.cols)];
+                if (d >= 0) {
+                    relax(ctx, cell, to, g[cell] + d, toRow, toCol);
+                }
+            }
+            if (cell == from) {
+                for (int entrance : startCluster.cells) {
+                    int d = startDist[startCluster.local(entrance, this.cols)];
+                    if (d >= 0) {
+                        relax(ctx, cell, entrance, d, toRow, toCol);
+                    }
+                }
+            }
+            int n = cluster.cells.length;
+            for (int i = 0; i < n; i++) {
+                if (cluster.cells[i] != cell) {
+                    continue;
+                }
+                relax(ctx, cell, cluster.partners[i], g[cell] + 1, toRow, toCol);
+                for (int j = 0; j < n; j++) {
+                    int d = cluster.distances[i * n + j];
+                    if (d != UNREACHABLE) {
+                        relax(ctx, cell, cluster.cells[j], g[cell] + d, toRow, toCol);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lowers cost of a cell if it is reached more cheaply.
+     *
+     * @param ctx    search context
+     * @param parent cell id from which the cell is reached
+     * @param cell   cell id
+     * @param cost   cost of the new path to the cell
+     * @param toRow  row of the destination
+     * @param toCol  column of the destination
+     */
+    private void relax(SearchContext ctx, int parent, int cell, int cost, int toRow, int toCol) {
+        int state = ctx.stamp[cell];
+        if (state == ctx.closed || (state == ctx.open && ctx.g[cell] <= cost)) {
+            return;
+        }
+        ctx.g[cell] = cost;
+        ctx.links()[cell] = parent;
+        long key = key(cost, cell, toRow, toCol);
+        if (state == ctx.open) {
+            ctx.decrease(cell, key);
+        } else {
+            ctx.stamp[cell] = ctx.open;
+            ctx.push(cell, key);
+        }
+    }
+
+    /**
+     * Computes heap priority of a cell, lower total estimate first and longer known path on ties.
+     *
+     * @param cost  cost of the best known path to the cell
+     * @param cell  cell id
+     * @param toRow row of the destination
+     * @param toCol column of the destination
+     * @return priority of the cell
+     */
+    private long key(int cost, int cell, int toRow, int toCol) {
+        int h = Math.abs(cell / this.cols - toRow) + Math.abs(cell % this.cols - toCol);
+        return ((long) (cost + h) << 32) | (Integer.MAX_VALUE - cost);
+    }
+
+    /**
+     * Appends moves between two consecutive cells of the abstract path, either a single move over a cluster border
+     * or the shortest path inside a cluster.
+     *
+     * @param from first cell
+     * @param to   second cell
+     * @param path directions to append to
+     */
+    private void refine(int from, int to, List<Field.Direction> path) {
+        int k = clusterOf(from);
+        if (k != clusterOf(to)) {
+            int step = to - from;
+            path.add(step == 1 ? Field.Direction.R : step == -1 ? Field.Direction.L
+                    : step > 0 ? Field.Direction.D : Field.Direction.U);
+            return;
+        }
+        Cluster cluster = this.clusters[k];
+        int[] dist = new int[this.size * this.size];
+        byte[] entered = new byte[this.size * this.size];
+        explore(cluster, from, dist, entered, this.queue);
+        Field.Direction[] moves = new Field.Direction[dist[cluster.local(to, this.cols)]];
+        int cell = to;
+        for (int i = moves.length - 1; i >= 0; i--) {
+            Field.Direction dir = DIRECTIONS[entered[cluster.local(cell, this.cols)]];
+            moves[i] = dir;
+            cell = this.maze.neighbour(cell, dir.opposite(dir));
+        }
+        path.addAll(Arrays.asList(moves));
+    }
+
+    /**
+     * Runs a breadth-first search that does not leave a cluster.
+     *
+     * @param cluster cluster
+     * @param source  cell id of the start inside the cluster
+     * @param dist    distance of every cell of the cluster by local index, -1 for cells that were not reached
+     * @param entered ordinal of the direction in which every cell was entered, null if not needed
+     * @param queue   queue of local indices, at least as long as the cluster has cells
+     */
+    private void explore(Cluster cluster, int source, int[] dist, byte[] entered, int[] queue) {
+        int width = cluster.col1 - cluster.col0 + 1;
+        int height = cluster.row1 - cluster.row0 + 1;
+        Arrays.fill(dist, -1);
+        int head = 0;
+        int tail = 0;
+        int start = cluster.local(source, this.cols);
+        dist[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int local = queue[head++];
+            int row = local / width;
+            int col = local - row * width;
+            int exits = this.maze.exits((cluster.row0 + row) * this.cols + cluster.col0 + col);
+            int next = dist[local] + 1;
+            for (Field.Direction dir : DIRECTIONS) {
+                if ((exits & (1 << dir.ordinal())) == 0) {
+                    continue;
+                }
+                int r = row;
+                int c = col;
+                switch (dir) {
+                    case D -> r++;
+                    case L -> c--;
+                    case R -> c++;
+                    case U -> r--;
+                }
+                if (r < 0 || r >= height || c < 0 || c >= width) {
+                    continue;
+                }
+                int neighbour = r * width + c;
+                if (dist[neighbour] < 0) {
+                    dist[neighbour] = next;
+                    if (entered != null) {
+                        entered[neighbour] = (byte) dir.ordinal();
+                    }
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans and reconnects clusters marked by {@link #terrainChanged}.
+     */
+    private void rebuild() {
+        if (!this.changed) {
+            return;
+        }
+        for (int k = 0; k < this.clusters.length; k++) {
+            if (this.dirtyRight[k]) {
+                scanRight(k);
+                this.dirtyRight[k] = false;
+            }
+            if (this.dirtyBottom[k]) {
+                scanBottom(k);
+                this.dirtyBottom[k] = false;
+            }
+        }
+        for (int k = 0; k < this.clusters.length; k++) {
+            if (this.dirty[k]) {
+                connect(k, this.queue);
+                this.dirty[k] = false;
+            }
+        }
+        this.changed = false;
+    }
+
+    /**
+     * Finds entrances over the right border of a cluster.
+     *
+     * @param k index of the cluster
+     */
+    private void scanRight(int k) {
+        Cluster cluster = this.clusters[k];
+        this.rightBorder[k] = cluster.col1 == this.cols - 1 ? new int[0]
+                : scanBorder(cluster.row0 * this.cols + cluster.col1, this.cols, 1, cluster.row1 - cluster.row0 + 1);
+    }
+
+    /**
+     * Finds entrances over the bottom border of a cluster.
+     *
+     * @param k index of the cluster
+     */
+    private void scanBottom(int k) {
+        Cluster cluster = this.clusters[k];
+        this.bottomBorder[k] = k + this.clusterCols >= this.clusters.length ? new int[0]
+                : scanBorder(cluster.row1 * this.cols + cluster.col0, 1, this.cols, cluster.col1 - cluster.col0 + 1);
+    }
+
+    /**
+     * Finds entrances over a border. Every opening, a run of cells passable on both sides, gets an entrance in its
+     * middle, long openings get one at each end.
+     *
+     * @param first  cell id of the first border cell inside the cluster
+     * @param along  cell id offset between border cells
+     * @param across cell id offset from a border cell to the cell on the other side
+     * @param length number of border cells
+     * @return pairs of cell ids inside and outside the cluster
+     */
+    private int[] scanBorder(int first, int along, int across, int length) {
+        int[] entrances = new int[length * 2];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            int cell = first + i * along;
+            boolean open = i < length && this.maze.isPassable(cell) && this.maze.isPassable(cell + across);
+            if (open && start < 0) {
+                start = i;
+            } else if (!open && start >= 0) {
+                int end = i - 1;
+                if (end - start + 1 < SPLIT_ENTRANCE) {
+                    int middle = first + (start + end) / 2 * along;
+                    entrances[count++] = middle;
+                    entrances[count++] = middle + across;
+                } else {
+                    entrances[count++] = first + start * along;
+                    entrances[count++] = first + start * along + across;
+                    entrances[count++] = first + end * along;
+                    entrances[count++] = first + end * along + across;
+                }
+                start = -1;
+            }
+        }
+        return Arrays.copyOf(entrances, count);
+    }
+
+    /**
+     * Collects entrances of a cluster from its four borders and computes distances between them.
+     *
+     * @param k     index of the cluster
+     * @param queue queue for searches inside the cluster
+     */
+    private void connect(int k, int[] queue) {
+        Cluster cluster = this.clusters[k];
+        int[] left = k % this.clusterCols > 0 ? this.rightBorder[k - 1] : new int[0];
+        int[] top = k >= this.clusterCols ? this.bottomBorder[k - this.clusterCols] : new int[0];
+        int n = (this.rightBorder[k].length + this.bottomBorder[k].length + left.length + top.length) / 2;
+        int[] cells = new int[n];
+        int[] partners = new int[n];
+        int i = 0;
+        for (int[] border : new int[][]{this.rightBorder[k], this.bottomBorder[k]}) {
+            for (int j = 0; j < border.length; j += 2, i++) {
+                cells[i] = border[j];
+                partners[i] = border[j + 1];
+            }
+        }
+        for (int[] border : new int[][]{left, top}) {
+            for (int j = 0; j < border.length; j += 2, i++) {
+                cells[i] = border[j + 1];
+                partners[i] = border[j];
+            }
+        }
+        int[] distances = new int[n * n];
+        int[] dist = new int[this.size * this.size];
+        for (i = 0; i < n; i++) {
+            explore(cluster, cells[i], dist, null, queue);
+            for (int j = 0; j < n; j++) {
+                int d = dist[cluster.local(cells[j], this.cols)];
+                distances[i * n + j] = d < 0 ? UNREACHABLE : d;
+            }
+        }
+        cluster.cells = cells;
+        cluster.partners = partners;
+        cluster.distances = distances;
+    }
+
+    /**
+     * Returns the cluster containing a cell.
+     *
+     * @param cell cell id
+     * @return index of the cluster
+     */
+    private int clusterOf(int cell) {
+        return cell / this.cols / this.size * this.clusterCols + cell % this.cols / this.size;
+    }
+
+    /**
+     * Rectangular part of the maze with its entrances.
+     */
+    private static final class Cluster {
+        /**
+         * First row of the cluster
+         */
+        final int row0;
+        /**
+         * First column of the cluster
+         */
+        final int col0;
+        /**
+         * Last row of the cluster
+         */
+        final int row1;
+        /**
+         * Last column of the cluster
+         */
+        final int col1;
+        /**
+         * Cell ids of entrances, a cell is listed once for every border it is an entrance over
+         */
+        int[] cells = new int[0];
+        /**
+         * Cell ids on the other side of the border of every entrance
+         */
+        int[] partners = new int[0];
+        /**
+         * Distances between entrances inside the cluster, from entrance {@code i} to {@code j} at {@code i * n + j}
+         */
+        int[] distances = new int[0];
+
+        /**
+         * Constructor.
+         *
+         * @param row0 first row
+         * @param col0 first column
+         * @param row1 last row
+         * @param col1 last column
+         */
+        Cluster(int row0, int col0, int row1, int col1) {
+            this.row0 = row0;
+            this.col0 = col0;
+            this.row1 = row1;
+            this.col1 = col1;
+        }
+
+        /**
+         * Returns index of a cell of the cluster in arrays of cluster size.
+         *
+         * @param cell cell id inside the cluster
+         * @param cols number of columns of the maze
+         * @return local index
+         */
+        int local(int cell, int cols) {
+            return (cell / cols - this.row0) * (this.col1 - this.col0 + 1) + cell % cols - this.col0;
+        }
+    }
+}
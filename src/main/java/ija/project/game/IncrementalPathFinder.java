@@ -0,0 +1,501 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class finding shortest paths by D* Lite, an incremental search that keeps its state between queries. The search
+ * runs from the goal towards the start, so when the start moves or terrain changes only the affected part of the
+ * previous search is repaired instead of searching again. Changes of passable cells are received as
+ * {@link Maze.TerrainListener} events and applied before the next query.
+ * <p>
+ * The goal may move as well: a small move is repaired like a change of terrain, as if the old goal lost and the new
+ * one gained a free connection to the real goal, a distant goal starts a new search.
+ * Queries are serialized.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class IncrementalPathFinder implements Maze.TerrainListener {
+    /**
+     * Largest Manhattan distance of a goal move that is repaired instead of starting a new search
+     */
+    public static final int MOVING_GOAL_DISTANCE = 4;
+    /**
+     * Cost of unreachable cells, small enough not to overflow when keys are computed
+     */
+    private static final int INFINITY = 1 << 29;
+    /**
+     * All directions, cached so that searches do not allocate
+     */
+    private static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+
+    /**
+     * Maze in which paths are searched
+     */
+    private final Maze maze;
+    /**
+     * Number of columns of the maze
+     */
+    private final int cols;
+    /**
+     * Cost of the path from every cell to the goal found so far
+     */
+    private final int[] g;
+    /**
+     * One-step lookahead cost of every cell, the best neighbour cost plus one
+     */
+    private final int[] rhs;
+    /**
+     * Cells whose {@link #g} and {@link #rhs} differ
+     */
+    private final Queue queue;
+    /**
+     * Cells that changed passability since the last query
+     */
+    private int[] changes = new int[8];
+    /**
+     * Number of cells in {@link #changes}
+     */
+    private int changeCount;
+    /**
+     * Current goal, -1 if no search was started yet
+     */
+    private int goal = -1;
+    /**
+     * Start of the last query
+     */
+    private int start = -1;
+    /**
+     * Sum of heuristic distances the start moved by, added to keys so that older keys stay valid lower bounds
+     */
+    private int km;
+    /**
+     * Number of cells expanded by the last query
+     */
+    private int expanded;
+
+    /**
+     * Constructor, starts listening to terrain changes of the maze.
+     *
+     * @param maze maze in which paths are searched
+     */
+    public IncrementalPathFinder(Maze maze) {
+        this.maze = maze;
+        this.cols = maze.numCols();
+        this.g = new int[maze.numCells()];
+        this.rhs = new int[maze.numCells()];
+        this.queue = new Queue(maze.numCells());
+        maze.addTerrainListener(this);
+    }
+
+    /**
+     * Stops listening to terrain changes of the maze, the finder must not be used afterwards.
+     */
+    public void detach() {
+        this.maze.removeTerrainListener(this);
+    }
+
+    /**
+     * Returns the maze in which paths are searched.
+     *
+     * @return maze
+     */
+    public Maze getMaze() {
+        return this.maze;
+    }
+
+    /**
+     * Returns number of cells expanded by the last query.
+     *
+     * @return number of expanded cells
+     */
+    public synchronized int expanded() {
+        return this.expanded;
+    }
+
+    /**
+     * Remembers a changed cell, it is repaired by the next query.
+     *
+     * @param maze maze that changed
+     * @param cell cell id of the changed cell
+     */
+    @Override
+    public synchronized void terrainChanged(Maze maze, int cell) {
+        if (this.changeCount == this.changes.length) {
+            this.changes = Arrays.copyOf(this.changes, this.changeCount * 2);
+        }
+        this.changes[this.changeCount++] = cell;
+    }
+
+    /**
+     * Finds the shortest path between two cells, reusing the previous search.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the goal
+     * @return directions leading from the start to the goal, empty if the goal is not reachable
+     */
+    public synchronized List<Field.Direction> findPath(int from, int to) {
+        List<Field.Direction> path = new ArrayList<>();
+        if (!plan(from, to)) {
+            return path;
+        }
+        // the cost of the start bounds the walk in case the search is inconsistent
+        int cell = from;
+        for (int steps = this.g[from]; steps > 0 && cell != to; steps--) {
+            Field.Direction best = null;
+            int bestCost = INFINITY;
+            int exits = this.maze.exits(cell);
+            for (Field.Direction dir : DIRECTIONS) {
+                if ((exits & (1 << dir.ordinal())) != 0 && this.g[this.maze.neighbour(cell, dir)] < bestCost) {
+                    best = dir;
+                    bestCost = this.g[this.maze.neighbour(cell, dir)];
+                }
+            }
+            path.add(best);
+            cell = this.maze.neighbour(cell, best);
+        }
+        return path;
+    }
+
+    /**
+     * Returns length of the shortest path between two cells, reusing the previous search.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the goal
+     * @return number of moves or -1 if the goal is not reachable
+     */
+    public synchronized int distance(int from, int to) {
+        return plan(from, to) ? this.g[from] : -1;
+    }
+
+    /**
+     * Brings the search up to date with the start, the goal and terrain changes and repairs it.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the goal
+     * @return true if the goal is reachable from the start, false otherwise
+     */
+    private boolean plan(int from, int to) {
+        this.expanded = 0;
+        if (!this.maze.isPassable(from) || !this.maze.isPassable(to)) {
+            return false;
+        }
+        if (this.goal < 0 || Math.abs(to / this.cols - this.goal / this.cols)
+                + Math.abs(to % this.cols - this.goal % this.cols) > MOVING_GOAL_DISTANCE) {
+            reset(from, to);
+        } else {
+            this.km += heuristic(this.start, from);
+            this.start = from;
+            if (to != this.goal) {
+                int old = this.goal;
+                this.goal = to;
+                update(old);
+                update(to);
+            }
+            for (int i = 0; i < this.changeCount; i++) {
+                int cell = this.changes[i];
+                update(cell);
+                for (Field.Direction dir : DIRECTIONS) {
+                    int next = this.maze.neighbour(cell, dir);
+                    if (next >= 0) {
+                        update(next);
+                    }
+                }
+            }
+        }
+        this.changeCount = 0;
+        repair();
+        return this.g[from] < INFINITY;
+    }
+
+    /**
+     * Starts a new search, forgetting all previous results.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the goal
+     */
+    private void reset(int from, int to) {
+        Arrays.fill(this.g, INFINITY);
+        Arrays.fill(this.rhs, INFINITY);
+        this.queue.clear();
+        this.km = 0;
+        this.start = from;
+        this.goal = to;
+        this.rhs[to] = 0;
+        this.queue.insert(to, key(to));
+    }
+
+    /**
+     * Expands inconsistent cells until the start is consistent and no queued cell can improve it.
+     */
+    private void repair() {
+        while (!this.queue.isEmpty()
+                && (this.queue.topKey() < key(this.start) || this.rhs[this.start] != this.g[this.start])) {
+            int cell = this.queue.top();
+            long oldKey = this.queue.topKey();
+            long newKey = key(cell);
+            this.expanded++;
+            if (oldKey < newKey) {
+                this.queue.update(cell, newKey);
+            } else if (this.g[cell] > this.rhs[cell]) {
+                this.g[cell] = this.rhs[cell];
+                this.queue.remove(cell);
+                updateNeighbours(cell);
+            } else {
+                this.g[cell] = INFINITY;
+                update(cell);
+                updateNeighbours(cell);
+            }
+        }
+    }
+
+    /**
+     * Updates all passable neighbours of a cell.
+     *
+     * @param cell cell id
+     */
+    private void updateNeighbours(int cell) {
+        int exits = this.maze.exits(cell);
+        for (Field.Direction dir : DIRECTIONS) {
+            if ((exits & (1 << dir.ordinal())) != 0) {
+                update(this.maze.neighbour(cell, dir));
+            }
+        }
+    }
+
+    /**
+     * Recomputes the lookahead cost of a cell and queues it if it became inconsistent.
+     *
+     * @param cell cell id
+     */
+    private void update(int cell) {
+        if (cell != this.goal) {
+            int best = INFINITY;
+            if (this.maze.isPassable(cell)) {
+                int exits = this.maze.exits(cell);
+                for (Field.Direction dir : DIRECTIONS) {
+                    if ((exits & (1 << dir.ordinal())) != 0) {
+                        best = Math.min(best, this.g[this.maze.neighbour(cell, dir)] + 1);
+                    }
+                }
+            }
+            this.rhs[cell] = Math.min(best, INFINITY);
+        } else {
+            this.rhs[cell] = 0;
+        }
+        if (this.g[cell] != this.rhs[cell]) {
+            if (this.queue.contains(cell)) {
+                this.queue.update(cell, key(cell));
+            } else {
+                this.queue.insert(cell, key(cell));
+            }
+        } else if (this.queue.contains(cell)) {
+            this.queue.remove(cell);
+        }
+    }
+
+    /**
+     * Computes queue priority of a cell, lower estimate first and lower cost on ties.
+     *
+     * @param cell cell id
+     * @return priority of the cell
+     */
+    private long key(int cell) {
+        int cost = Math.min(this.g[cell], this.rhs[cell]);
+        return ((long) (cost + heuristic(this.start, cell) + this.km) << 32) | cost;
+    }
+
+    /**
+     * Returns Manhattan distance between two cells.
+     *
+     * @param a cell id
+     * @param b cell id
+     * @return distance
+     */
+    private int heuristic(int a, int b) {
+        return Math.abs(a / this.cols - b / this.cols) + Math.abs(a % this.cols - b % this.cols);
+    }
+
+    /**
+     * Binary heap of cells that supports changing and removing any cell.
+     */
+    private static final class Queue {
+        /**
+         * Position of every cell in the heap, -1 if the cell is not queued
+         */
+        private final int[] index;
+        /**
+         * Cells in heap order
+         */
+        private final int[] heap;
+        /**
+         * Priority of the cells in the heap
+         */
+        private final long[] keys;
+        /**
+         * Number of queued cells
+         */
+        private int size;
+
+        /**
+         * Constructor.
+         *
+         * @param cells number of cells of the maze
+         */
+        Queue(int cells) {
+            this.index = new int[cells];
+            this.heap = new int[cells];
+            this.keys = new long[cells];
+            Arrays.fill(this.index, -1);
+        }
+
+        /**
+         * Removes all cells.
+         */
+        void clear() {
+            for (int i = 0; i < this.size; i++) {
+                this.index[this.heap[i]] = -1;
+            }
+            this.size = 0;
+        }
+
+        /**
+         * Checks whether the queue is empty.
+         *
+         * @return true if no cell is queued, false otherwise
+         */
+        boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        /**
+         * Checks whether a cell is queued.
+         *
+         * @param cell cell id
+         * @return true if the cell is queued, false otherwise
+         */
+        boolean contains(int cell) {
+            return this.index[cell] >= 0;
+        }
+
+        /**
+         * Returns the cell with the lowest priority.
+         *
+         * @return cell id
+         */
+        int top() {
+            return this.heap[0];
+        }
+
+        /**
+         * Returns the lowest priority, {@link Long#MAX_VALUE} if the queue is empty.
+         *
+         * @return priority
+         */
+        long topKey() {
+            return this.size == 0 ? Long.MAX_VALUE : this.keys[0];
+        }
+
+        /**
+         * Adds a cell that is not queued.
+         *
+         * @param cell cell id
+         * @param key  priority of the cell
+         */
+        void insert(int cell, long key) {
+            siftUp(this.size++, cell, key);
+        }
+
+        /**
+         * Changes priority of a queued cell.
+         *
+         * @param cell cell id
+         * @param key  new priority
+         */
+        void update(int cell, long key) {
+            int i = this.index[cell];
+            if (key < this.keys[i]) {
+                siftUp(i, cell, key);
+            } else {
+                siftDown(i, cell, key);
+            }
+        }
+
+        /**
+         * Removes a queued cell.
+         *
+         * @param cell cell id
+         */
+        void remove(int cell) {
+            int i = this.index[cell];
+            this.index[cell] = -1;
+            int last = this.heap[--this.size];
+            long lastKey = this.keys[this.size];
+            if (i < this.size) {
+                if (lastKey < this.keys[i]) {
+                    siftUp(i, last, lastKey);
+                } else {
+                    siftDown(i, last, lastKey);
+                }
+            }
+        }
+
+        /**
+         * Moves a cell from the given position towards the root until the heap order holds.
+         *
+         * @param i    position of the hole where the cell should be placed
+         * @param cell cell id
+         * @param key  priority of the cell
+         */
+        private void siftUp(int i, int cell, long key) {
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (this.keys[up] <= key) {
+                    break;
+                }
+                place(i, this.heap[up], this.keys[up]);
+                i = up;
+            }
+            place(i, cell, key);
+        }
+
+        /**
+         * Moves a cell from the given position towards the leaves until the heap order holds.
+         *
+         * @param i    position of the hole where the cell should be placed
+         * @param cell cell id
+         * @param key  priority of the cell
+         */
+        private void siftDown(int i, int cell, long key) {
+            int half = this.size >>> 1;
+            while (i < half) {
+                int child = (i << 1) + 1;
+                if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) {
+                    child++;
+                }
+                if (key <= this.keys[child]) {
+                    break;
+                }
+                place(i, this.heap[child], this.keys[child]);
+                i = child;
+            }
+            place(i, cell, key);
+        }
+
+        /**
+         * Stores a cell to a position of the heap.
+         *
+         * @param i    position in the heap
+         * @param cell cell id
+         * @param key  priority of the cell
+         */
+        private void place(int i, int cell, long key) {
+            this.heap[i] = cell;
+            this.keys[i] = key;
+            this.index[cell] = i;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class compressing the maze to a graph of junctions. Nodes are passable cells that do not have exactly two exits,
+ * intersections and dead ends, and edges are corridors between them weighted by their length. Every corridor cell
+ * remembers the edge covering it and its distance from the edge start, so searches can start and end inside
+ * corridors. A ring of corridor cells without any junction gets one of its cells as a node.
+ * <p>
+ * An edge is stored at both of its ends in a slot {@code node * 4 + direction ordinal}. The graph listens to terrain
+ * changes of the maze and retraces only the corridors around a changed cell.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class JunctionGraph implements Maze.TerrainListener {
+    /**
+     * All directions, cached so that searches do not allocate
+     */
+    private static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+
+    /**
+     * Maze of the graph
+     */
+    private final Maze maze;
+    /**
+     * Number of columns of the maze
+     */
+    private final int cols;
+    /**
+     * Whether every cell is a node
+     */
+    private final boolean[] node;
+    /**
+     * Slot at the other end of the edge in every slot, -1 for no edge
+     */
+    private final int[] target;
+    /**
+     * Length of the edge in every slot
+     */
+    private final int[] length;
+    /**
+     * Slot of the edge covering every corridor cell, -1 for nodes, walls and cells not traced yet
+     */
+    private final int[] owner;
+    /**
+     * Distance of every corridor cell from the node of its {@link #owner} slot
+     */
+    private final int[] offset;
+    /**
+     * Number of nodes
+     */
+    private int nodeCount;
+
+    /**
+     * Constructor, builds the graph and starts listening to terrain changes of the maze.
+     *
+     * @param maze maze of the graph
+     */
+    public JunctionGraph(Maze maze) {
+        this.maze = maze;
+        this.cols = maze.numCols();
+        int cells = maze.numCells();
+        this.node = new boolean[cells];
+        this.target = new int[cells * DIRECTIONS.length];
+        this.length = new int[cells * DIRECTIONS.length];
+        this.owner = new int[cells];
+        this.offset = new int[cells];
+        Arrays.fill(this.target, -1);
+        Arrays.fill(this.owner, -1);
+        for (int cell = 0; cell < cells; cell++) {
+            if (isJunctionCell(cell)) {
+                this.node[cell] = true;
+                this.nodeCount++;
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            if (this.node[cell]) {
+                trace(cell);
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            coverRing(cell);
+        }
+        maze.addTerrainListener(this);
+    }
+
+    /**
+     * Stops listening to terrain changes of the maze, the graph must not be used afterwards.
+     */
+    public void detach() {
+        this.maze.removeTerrainListener(this);
+    }
+
+    /**
+     * Returns the maze of the graph.
+     *
+     * @return maze
+     */
+    public Maze getMaze() {
+        return this.maze;
+    }
+
+    /**
+     * Returns number of nodes of the graph.
+     *
+     * @return number of junctions, dead ends and ring nodes
+     */
+    public synchronized int nodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * Checks whether a cell is a node of the graph, a cell where a moving object has to decide where to go.
+     *
+     * @param cell cell id
+     * @return true if the cell is a node, false for corridor cells and walls
+     */
+    public boolean isNode(int cell) {
+        return this.node[cell];
+    }
+
+    /**
+     * Returns the move that continues along the corridor of a cell.
+     *
+     * @param cell cell id of a corridor cell
+     * @param dir  direction in which the cell was entered
+     * @return direction of the other exit of the corridor cell, null if the cell is a node or a wall
+     */
+    public Field.Direction follow(int cell, Field.Direction dir) {
+        if (this.node[cell] || !this.maze.isPassable(cell)) {
+            return null;
+        }
+        int exits = this.maze.exits(cell) & ~(1 << dir.opposite(dir).ordinal());
+        // entering from a side that is not an exit leaves two candidates, the first one is taken
+        return DIRECTIONS[Integer.numberOfTrailingZeros(exits)];
+    }
+
+    /**
+     * Updates the graph around a cell that changed passability. Edges covering the cell and its neighbours are
+     * removed, nodes are recomputed and corridors from the touched nodes are traced again.
+     *
+     * @param maze maze that changed
+     * @param cell cell id of the changed cell
+     */
+    @Override
+    public synchronized void terrainChanged(Maze maze, int cell) {
+        int[] affected = new int[DIRECTIONS.length + 1];
+        int count = 0;
+        affected[count++] = cell;
+        for (Field.Direction dir : DIRECTIONS) {
+            int next = this.maze.neighbour(cell, dir);
+            if (next >= 0) {
+                affected[count++] = next;
+            }
+        }
+        // nodes whose corridors must be traced again and cells that lost their edge
+        List<Integer> touched = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int a = affected[i];
+            if (this.owner[a] >= 0) {
+                removeEdge(this.owner[a], touched);
+            }
+            if (this.node[a]) {
+                for (int slot = a * DIRECTIONS.length; slot < (a + 1) * DIRECTIONS.length; slot++) {
+                    if (this.target[slot] >= 0) {
+                        removeEdge(slot, touched);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int a = affected[i];
+            boolean junction = isJunctionCell(a);
+            if (junction != this.node[a]) {
+                this.node[a] = junction;
+                this.nodeCount += junction ? 1 : -1;
+            }
+            touched.add(a);
+        }
+        for (int t : touched) {
+            if (this.node[t]) {
+                trace(t);
+            }
+        }
+        for (int t : touched) {
+            coverRing(t);
+        }
+    }
+
+    /**
+     * Finds the shortest path between two cells by A* search on the graph.
+     *
+     * @param ctx  search context not used by other threads
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return directions leading from the start to the destination, empty if the destination is not reachable
+     */
+    public synchronized List<Field.Direction> findPath(SearchContext ctx, int from, int to) {
+        List<Field.Direction> path = new ArrayList<>();
+        if (from == to || !search(ctx, from, to)) {
+            return path;
+        }
+        int[] links = ctx.links();
+        int count = 1;
+        for (int cell = to; cell != from; cell = links[cell]) {
+            count++;
+        }
+        int[] waypoints = new int[count];
+        for (int i = count - 1, cell = to; i >= 0; i--, cell = links[cell]) {
+            waypoints[i] = cell;
+        }
+        for (int i = 1; i < count; i++) {
+            walk(waypoints[i - 1], DIRECTIONS[ctx.parent[waypoints[i]]], waypoints[i], path);
+        }
+        return path;
+    }
+
+    /**
+     * Returns length of the shortest path between two cells.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return number of moves or -1 if the destination is not reachable
+     */
+    public synchronized int distance(int from, int to) {
+        if (from == to) {
+            return this.maze.isPassable(from) ? 0 : -1;
+        }
+        SearchContext ctx = SearchContext.current();
+        return search(ctx, from, to) ? ctx.g[to] : -1;
+    }
+
+    /**
+     * Runs A* search over nodes. A corridor start is connected to both ends of its corridor, a corridor destination
+     * is reached from both ends of its corridor, and directly when it lies in the same corridor as the start.
+     * Waypoints remember the cell they were reached from in the links of the context and the direction in which
+     * that cell was left in its parent array.
+     *
+     * @param ctx  search context
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return true if the destination was reached, false otherwise
+     */
+    private boolean search(SearchContext ctx, int from, int to) {
+        ctx.begin(this.maze.numCells());
+        if (!this.maze.isPassable(from) || !this.maze.isPassable(to)) {
+            return false;
+        }
+        int toRow = to / this.cols;
+        int toCol = to % this.cols;
+        ctx.g[from] = 0;
+        ctx.links()[from] = from;
+        if (this.node[from]) {
+            ctx.stamp[from] = ctx.open;
+            ctx.push(from, key(0, from, toRow, toCol));
+        } else {
+            ctx.stamp[from] = ctx.closed;
+            int slot = this.owner[from];
+            int back = this.target[slot];
+            int k = this.offset[from];
+            Field.Direction towardsStart = towardsStart(from);
+            Field.Direction towardsEnd = otherExit(from, towardsStart);
+            relax(ctx, from, slot / DIRECTIONS.length, k, towardsStart, toRow, toCol);
+            relax(ctx, from, back / DIRECTIONS.length, this.length[slot] - k, towardsEnd, toRow, toCol);
+            if (!this.node[to] && this.owner[to] == slot) {
+                int d = this.offset[to] - k;
+                relax(ctx, from, to, Math.abs(d), d > 0 ? towardsEnd : towardsStart, toRow, toCol);
+            }
+        }
+        int goalSlot = this.node[to] ? -1 : this.owner[to];
+        int goalBack = goalSlot < 0 ? -1 : this.target[goalSlot];
+        while (!ctx.isEmpty()) {
+            int cell = ctx.pop();
+            ctx.stamp[cell] = ctx.closed;
+            ctx.expanded++;
+            if (cell == to) {
+                return true;
+            }
+            int cost = ctx.g[cell];
+            for (int slot = cell * DIRECTIONS.length; slot < (cell + 1) * DIRECTIONS.length; slot++) {
+                int other = this.target[slot];
+                if (other < 0) {
+                    continue;
+                }
+                Field.Direction dir = DIRECTIONS[slot % DIRECTIONS.length];
+                relax(ctx, cell, other / DIRECTIONS.length, cost + this.length[slot], dir, toRow, toCol);
+                if (slot == goalSlot) {
+                    relax(ctx, cell, to, cost + this.offset[to], dir, toRow, toCol);
+                }
+                if (slot == goalBack) {
+                    relax(ctx, cell, to, cost + this.length[slot] - this.offset[to], dir, toRow, toCol);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lowers cost of a waypoint if it is reached more cheaply.
+     *
+     * @param ctx    search context
+     * @param parent cell id from which the waypoint is reached
+     * @param cell   cell id of the waypoint
+     * @param cost   cost of the new path to the waypoint
+     * @param dir    direction in which the parent is left
+     * @param toRow  row of the destination
+     * @param toCol  column of the destination
+     */
+    private void relax(SearchContext ctx, int parent, int cell, int cost, Field.Direction dir, int toRow, int toCol) {
+        int state = ctx.stamp[cell];
+        if (state == ctx.closed || (state == ctx.open && ctx.g[cell] <= cost)) {
+            return;
+        }
+        ctx.g[cell] = cost;
+        ctx.links()[cell] = parent;
+        ctx.parent[cell] = (byte) dir.ordinal();
+        long key = key(cost, cell, toRow, toCol);
+        if (state == ctx.open) {
+            ctx.decrease(cell, key);
+        } else {
+            ctx.stamp[cell] = ctx.open;
+            ctx.push(cell, key);
+        }
+    }
+
+    /**
+     * Computes heap priority of a waypoint, lower total estimate first and longer known path on ties.
+     *
+     * @param cost  cost of the best known path to the waypoint
+     * @param cell  cell id
+     * @param toRow row of the destination
+     * @param toCol column of the destination
+     * @return priority of the waypoint
+     */
+    private long key(int cost, int cell, int toRow, int toCol) {
+        int h = Math.abs(cell / this.cols - toRow) + Math.abs(cell % this.cols - toCol);
+        return ((long) (cost + h) << 32) | (Integer.MAX_VALUE - cost);
+    }
+
+    /**
+     * Appends moves from one waypoint to the next one, leaving the first one in the given direction and following
+     * the corridor.
+     *
+     * @param from cell id of the first waypoint
+     * @param dir  direction in which the first waypoint is left
+     * @param to   cell id of the second waypoint
+     * @param path directions to append to
+     */
+    private void walk(int from, Field.Direction dir, int to, List<Field.Direction> path) {
+        int cell = this.maze.neighbour(from, dir);
+        path.add(dir);
+        while (cell != to) {
+            dir = otherExit(cell, dir.opposite(dir));
+            path.add(dir);
+            cell = this.maze.neighbour(cell, dir);
+        }
+    }
+
+    /**
+     * Returns the exit of a corridor cell leading to the node its edge starts at.
+     *
+     * @param cell cell id of a corridor cell
+     * @return direction towards the start node of the edge
+     */
+    private Field.Direction towardsStart(int cell) {
+        int slot = this.owner[cell];
+        int start = slot / DIRECTIONS.length;
+        int exits = this.maze.exits(cell);
+        for (Field.Direction dir : DIRECTIONS) {
+            if ((exits & (1 << dir.ordinal())) == 0) {
+                continue;
+            }
+            int next = this.maze.neighbour(cell, dir);
+            if (this.offset[cell] == 1 ? next == start : this.owner[next] == slot
+                    && this.offset[next] == this.offset[cell] - 1) {
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the exit of a corridor cell other than the given one.
+     *
+     * @param cell cell id of a corridor cell
+     * @param dir  one exit of the cell
+     * @return the other exit
+     */
+    private Field.Direction otherExit(int cell, Field.Direction dir) {
+        int exits = this.maze.exits(cell) & ~(1 << dir.ordinal());
+        return DIRECTIONS[Integer.numberOfTrailingZeros(exits)];
+    }
+
+    /**
+     * Checks whether a cell should be a node by its exits.
+     *
+     * @param cell cell id
+     * @return true for passable cells without exactly two exits, false otherwise
+     */
+    private boolean isJunctionCell(int cell) {
+        return this.maze.isPassable(cell) && Integer.bitCount(this.maze.exits(cell)) != 2;
+    }
+
+    /**
+     * Traces all corridors leaving a node that have no edge yet.
+     *
+     * @param start cell id of the node
+     */
+    private void trace(int start) {
+        int exits = this.maze.exits(start);
+        for (Field.Direction dir : DIRECTIONS) {
+            int slot = start * DIRECTIONS.length + dir.ordinal();
+            if ((exits & (1 << dir.ordinal())) == 0 || this.target[slot] >= 0) {
+                continue;
+            }
+            int cell = this.maze.neighbour(start, dir);
+            Field.Direction last = dir;
+            int steps = 1;
+            while (!this.node[cell]) {
+                this.owner[cell] = slot;
+                this.offset[cell] = steps;
+                last = otherExit(cell, last.opposite(last));
+                cell = this.maze.neighbour(cell, last);
+                steps++;
+            }
+            int back = cell * DIRECTIONS.length + last.opposite(last).ordinal();
+            this.target[slot] = back;
+            this.target[back] = slot;
+            this.length[slot] = steps;
+            this.length[back] = steps;
+        }
+    }
+
+    /**
+     * Makes a corridor cell that is not covered by any edge a node, it lies on a ring without junctions.
+     *
+     * @param cell cell id
+     */
+    private void coverRing(int cell) {
+        if (this.node[cell] || this.owner[cell] >= 0 || !this.maze.isPassable(cell)) {
+            return;
+        }
+        this.node[cell] = true;
+        this.nodeCount++;
+        trace(cell);
+    }
+
+    /**
+     * Removes an edge from both of its ends and uncovers its corridor cells. Cells are walked by their owner and
+     * offset, exits of the corridor may already have changed.
+     *
+     * @param slot    slot of the edge at either end
+     * @param touched list to which both end nodes and the uncovered cells are added
+     */
+    private void removeEdge(int slot, List<Integer> touched) {
+        int back = this.target[slot];
+        // corridor cells are owned by the slot their edge was traced from
+        int traced = slot;
+        int cell = this.maze.neighbour(slot / DIRECTIONS.length, DIRECTIONS[slot % DIRECTIONS.length]);
+        if (this.owner[cell] != slot) {
+            traced = back;
+            cell = this.maze.neighbour(back / DIRECTIONS.length, DIRECTIONS[back % DIRECTIONS.length]);
+        }
+        while (cell >= 0 && this.owner[cell] == traced) {
+            this.owner[cell] = -1;
+            touched.add(cell);
+            int next = -1;
+            for (Field.Direction d : DIRECTIONS) {
+                int n = this.maze.neighbour(cell, d);
+                if (n >= 0 && this.owner[n] == traced && this.offset[n] == this.offset[cell] + 1) {
+                    next = n;
+                    break;
+                }
+            }
+            cell = next;
+        }
+        this.target[slot] = -1;
+        this.target[back] = -1;
+        touched.add(slot / DIRECTIONS.length);
+        touched.add(back / DIRECTIONS.length);
+    }
+}
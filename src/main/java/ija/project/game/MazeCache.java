@@ -0,0 +1,382 @@
+package ija.project.game;
+
+import ija.project.common.Maze;
+import ija.project.common.MazeObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Class keeping compiled versions of text maps in a cache directory. A compiled map is a binary file with a header
+ * (dimensions, number of ghosts and keys, size, modification time and checksum of the source and checksum of the
+ * payload) followed by positions of objects and run-length encoded terrain. A compiled map is used while the
+ * source keeps its modification time and size, or its content checksum when those change, otherwise it is
+ * compiled again.
+ * <p>
+ * Payload layout: pacman cell, target cell, ghost cells in id order and key cells as ints (cells are numbered
+ * {@code row * cols + col} inside the map without its border, -1 if missing), then runs of terrain as a terrain
+ * code byte and run length as unsigned LEB128 number covering all cells row by row.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public class MazeCache {
+    /**
+     * Magic number of the compiled map, "PMZ1"
+     */
+    private static final int MAGIC = 0x504D5A31;
+    /**
+     * Version of the compiled format
+     */
+    private static final short VERSION = 1;
+    /**
+     * Size of the header in bytes
+     */
+    private static final int HEADER_SIZE = 4 + 2 + 4 * 4 + 8 * 3 + 4 + 8;
+    /**
+     * Offset of the source modification time in the header
+     */
+    private static final int MTIME_OFFSET = 4 + 2 + 4 * 4 + 8;
+    /**
+     * Suffix of compiled maps
+     */
+    private static final String SUFFIX = ".pmz";
+
+    /**
+     * Directory with compiled maps
+     */
+    private final Path directory;
+
+    /**
+     * Constructor.
+     *
+     * @param directory directory with compiled maps, created when the first map is compiled
+     */
+    public MazeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Loads the maze of a text map, from its compiled version if it is up to date. Otherwise the text map is
+     * loaded and compiled for the next time. Problems with the cache are reported and the text map is used.
+     *
+     * @param source path to the text map
+     * @return loaded maze
+     * @throws IOException if the text map cannot be read or is not valid
+     */
+    public Maze load(Path source) throws IOException {
+        Path compiled = compiledPath(source);
+        long size = Files.size(source);
+        long mtime = Files.getLastModifiedTime(source).toMillis();
+        if (Files.isReadable(compiled)) {
+            try {
+                Maze maze = readCompiled(compiled, source, size, mtime);
+                if (maze != null) {
+                    return maze;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Compiled map " + compiled + " cannot be used: " + e.getMessage());
+            }
+        }
+        Maze maze = MazeLoader.load(source);
+        try {
+            writeCompiled((MazeClass) maze, compiled, size, mtime, checksum(Files.readAllBytes(source)));
+        } catch (IOException e) {
+            System.err.println("Map " + source + " cannot be compiled: " + e.getMessage());
+        }
+        return maze;
+    }
+
+    /**
+     * Returns path of the compiled version of the map.
+     *
+     * @param source path to the text map
+     * @return path in the cache directory
+     */
+    public Path compiledPath(Path source) {
+        return directory.resolve(source.getFileName().toString() + SUFFIX);
+    }
+
+    /**
+     * Reads the compiled map if it belongs to the current content of the source.
+     *
+     * @param compiled path to the compiled map
+     * @param source   path to the text map
+     * @param size     current size of the text map
+     * @param mtime    current modification time of the text map
+     * @return loaded maze or null if the compiled map is outdated
+     * @throws IOException if the compiled map cannot be read or is damaged
+     */
+    private Maze readCompiled(Path compiled, Path source, long size, long mtime) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(compiled));
+        if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC || data.getShort() != VERSION) {
+            throw new IOException("unknown format");
+        }
+        int rows = data.getInt();
+        int cols = data.getInt();
+        int ghosts = data.getInt();
+        int keys = data.getInt();
+        long sourceSize = data.getLong();
+        long sourceMtime = data.getLong();
+        long sourceChecksum = data.getLong();
+        int payloadLength = data.getInt();
+        long payloadChecksum = data.getLong();
+        if (sourceSize != size || sourceMtime != mtime) {
+            if (sourceSize != size || sourceChecksum != checksum(Files.readAllBytes(source))) {
+                return null;
+            }
+        }
+        if (payloadLength != data.remaining()
+                || payloadChecksum != checksum(data.array(), HEADER_SIZE, payloadLength)) {
+            throw new IOException("checksum mismatch");
+        }
+        // the checksum does not cover the header, counts are checked before anything is allocated by them
+        if (ghosts < 0 || keys < 0 || (long) ghosts + keys + 2 > payloadLength / 4) {
+            throw new IOException("damaged object counts");
+        }
+        int[] dimensions = readDimensions(source);
+        if (rows != dimensions[0] || cols != dimensions[1] || (long) (rows + 2) * (cols + 2) > Integer.MAX_VALUE) {
+            throw new IOException("damaged dimensions");
+        }
+        if (sourceMtime != mtime) {
+            // same content with a new time stamp, only the header is updated
+            data.putLong(MTIME_OFFSET, mtime);
+            replace(compiled, data.array(), new byte[0]);
+        }
+
+        MazeConfigure cfg = new MazeConfigure();
+        cfg.startReading(rows, cols);
+        int pacman = data.getInt();
+        int target = data.getInt();
+        int[] ghostCells = new int[ghosts];
+        for (int i = 0; i < ghosts; i++) {
+            ghostCells[i] = data.getInt();
+        }
+        int[] keyCells = new int[keys];
+        for (int i = 0; i < keys; i++) {
+            keyCells[i] = data.getInt();
+        }
+        // terrain runs, a run may continue over several rows
+        int cell = 0;
+        while (cell < rows * cols) {
+            byte terrain = data.get();
+            int length = readLength(data);
+            if (length <= 0 || cell + length > rows * cols) {
+                throw new IOException("damaged terrain");
+            }
+            while (length > 0) {
+                int row = cell / cols;
+                int col = cell % cols;
+                int run = Math.min(length, cols - col);
+                cfg.processRun(row + 1, col + 1, run, terrain);
+                cell += run;
+                length -= run;
+            }
+        }
+        cfg.markRowsProcessed();
+        placeObject(cfg, target, cols, 'T');
+        placeObject(cfg, pacman, cols, 'S');
+        for (int ghost : ghostCells) {
+            placeObject(cfg, ghost, cols, 'G');
+        }
+        for (int key : keyCells) {
+            placeObject(cfg, key, cols, 'K');
+        }
+        if (!cfg.stopReading()) {
+            throw new IOException("damaged maze");
+        }
+        return cfg.createMaze();
+    }
+
+    /**
+     * Places an object stored in the compiled map.
+     *
+     * @param cfg       configuration of the maze
+     * @param cell      cell of the object inside the map without border, -1 if there is no such object
+     * @param cols      number of columns of the map
+     * @param character map character of the object
+     */
+    private static void placeObject(MazeConfigure cfg, int cell, int cols, char character) {
+        if (cell >= 0) {
+            cfg.processObject(cell / cols + 1, cell % cols + 1, character);
+        }
+    }
+
+    /**
+     * Writes the compiled version of a freshly loaded maze.
+     *
+     * @param maze           loaded maze
+     * @param compiled       path to the compiled map
+     * @param size           size of the text map
+     * @param mtime          modification time of the text map
+     * @param sourceChecksum checksum of the text map
+     * @throws IOException if the compiled map cannot be written
+     */
+    private void writeCompiled(MazeClass maze, Path compiled, long size, long mtime, long sourceChecksum)
+            throws IOException {
+        int rows = maze.numRows() - 2;
+        int cols = maze.numCols() - 2;
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(mapCell(maze, maze.getPacMan() == null ? -1 : maze.getPacMan().getStartField().getCellId()));
+        payload.writeInt(mapCell(maze, maze.getTarget() == null ? -1 : maze.getTarget().getCellId()));
+        for (MazeObject ghost : maze.getGhosts()) {
+            payload.writeInt(mapCell(maze, ghost.getStartField().getCellId()));
+        }
+        int keys = 0;
+        for (int cell = maze.keyCells().nextSetBit(0); cell >= 0; cell = maze.keyCells().nextSetBit(cell + 1)) {
+            payload.writeInt(mapCell(maze, cell));
+            keys++;
+        }
+        byte runTerrain = -1;
+        int runLength = 0;
+        for (int row = 1; row <= rows; row++) {
+            for (int col = 1; col <= cols; col++) {
+                byte terrain = maze.terrain(maze.cellId(row, col));
+                if (terrain != runTerrain && runLength > 0) {
+                    writeRun(payload, runTerrain, runLength);
+                    runLength = 0;
+                }
+                runTerrain = terrain;
+                runLength++;
+            }
+        }
+        if (runLength > 0) {
+            writeRun(payload, runTerrain, runLength);
+        }
+        payload.flush();
+        byte[] body = payloadBytes.toByteArray();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putInt(rows).putInt(cols).putInt(maze.getGhosts().size()).putInt(keys)
+                .putLong(size).putLong(mtime).putLong(sourceChecksum)
+                .putInt(body.length).putLong(checksum(body, 0, body.length));
+
+        Files.createDirectories(directory);
+        replace(compiled, header.array(), body);
+    }
+
+    /**
+     * Replaces the compiled map by a temporary file moved over it, so a reader never sees a partly written map.
+     *
+     * @param compiled path to the compiled map
+     * @param header   bytes of the header
+     * @param body     bytes of the payload
+     * @throws IOException if the compiled map cannot be written
+     */
+    private void replace(Path compiled, byte[] header, byte[] body) throws IOException {
+        Path temporary = Files.createTempFile(directory, compiled.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, header);
+            Files.write(temporary, body, StandardOpenOption.APPEND);
+            Files.move(temporary, compiled, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads the number of rows and columns from the header line of the text map.
+     *
+     * @param source path to the text map
+     * @return rows and columns, -1 for a number that is missing
+     * @throws IOException if the text map cannot be read
+     */
+    private static int[] readDimensions(Path source) throws IOException {
+        int[] dimensions = {-1, -1};
+        try (InputStream in = Files.newInputStream(source)) {
+            int b = in.read();
+            for (int i = 0; i < dimensions.length; i++) {
+                while (b == ' ' || b == '\t') {
+                    b = in.read();
+                }
+                long value = -1;
+                while (b >= '0' && b <= '9' && value <= Integer.MAX_VALUE) {
+                    value = Math.max(value, 0) * 10 + (b - '0');
+                    b = in.read();
+                }
+                dimensions[i] = value <= Integer.MAX_VALUE ? (int) value : -1;
+            }
+        }
+        return dimensions;
+    }
+
+    /**
+     * Converts cell id of the maze to the cell numbering of the map without border.
+     *
+     * @param maze maze
+     * @param cell cell id in the maze or -1
+     * @return cell inside the map or -1
+     */
+    private static int mapCell(MazeClass maze, int cell) {
+        if (cell < 0) {
+            return -1;
+        }
+        return (maze.cellRow(cell) - 1) * (maze.numCols() - 2) + maze.cellCol(cell) - 1;
+    }
+
+    /**
+     * Writes one run of terrain.
+     *
+     * @param out     output stream
+     * @param terrain terrain code of the run
+     * @param length  number of cells in the run
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writeRun(DataOutputStream out, byte terrain, int length) throws IOException {
+        out.writeByte(terrain);
+        while ((length & ~0x7F) != 0) {
+            out.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.writeByte(length);
+    }
+
+    /**
+     * Reads run length written by {@link #writeRun}.
+     *
+     * @param data buffer positioned at the length
+     * @return length of the run
+     */
+    private static int readLength(ByteBuffer data) {
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = data.get();
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Computes CRC32 checksum of the bytes.
+     *
+     * @param bytes bytes
+     * @return checksum
+     */
+    private static long checksum(byte[] bytes) {
+        return checksum(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Computes CRC32 checksum of a part of the bytes.
+     *
+     * @param bytes  bytes
+     * @param offset first byte
+     * @param length number of bytes
+     * @return checksum
+     */
+    private static long checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+}
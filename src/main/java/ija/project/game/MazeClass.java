@@ -1,15 +1,18 @@
 package ija.project.game;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import ija.project.common.*;
 import ija.project.view.FieldView;
 
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Class representing maze. Maze is a 2D array of fields.
+ * Class representing maze. Maze is a 2D grid of fields. Terrain is stored in a packed {@link TileGrid}, every cell
+ * is identified by its cell id ({@code row * numCols() + col}) and its {@link Field} is created on first access.
  * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
  */
 public class MazeClass implements Maze {
@@ -22,13 +25,61 @@ public class MazeClass implements Maze {
      */
     private final int numOfCols;
     /**
-     * Existing fields in the maze
+     * All directions, cached so that neighbour lookups do not allocate
      */
-    protected List<List<Field>> fields;
+    private static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+    /**
+     * Terrain, adjacency and materialized fields of the maze
+     */
+    private final TileGrid grid;
+    /**
+     * Difference of cell ids between a cell and its neighbour, indexed by direction ordinal
+     */
+    private final int[] offsets;
+    /**
+     * Cells that are walls
+     */
+    private final BitBoard walls;
+    /**
+     * Cells that still contain a point
+     */
+    private final BitBoard pellets;
+    /**
+     * Cells that contain a key which was not collected yet
+     */
+    private final BitBoard keyCells;
+    /**
+     * Cells occupied by pacman or a ghost
+     */
+    private final BitBoard occupancy;
     /**
      * Existing ghosts in the maze
      */
     private List<MazeObject> ghosts = new ArrayList<MazeObject>();
+    /**
+     * Read-only view of the ghosts returned by {@link #getGhosts()}
+     */
+    private List<MazeObject> ghostsView = Collections.unmodifiableList(this.ghosts);
+    /**
+     * State of the ghosts, it also keeps the current and previous cell of every ghost
+     */
+    private final GhostPopulation ghostPopulation = new GhostPopulation(this);
+    /**
+     * Current cell of pacman, -1 if pacman was not placed yet
+     */
+    private int pacmanCell = -1;
+    /**
+     * Cell of pacman before its last move, -1 if pacman did not move yet
+     */
+    private int pacmanPreviousCell = -1;
+    /**
+     * Number of changes of passable cells since the maze was created
+     */
+    private int topologyVersion;
+    /**
+     * Listeners notified about changes of passable cells, may be added by threads searching the maze
+     */
+    private final List<TerrainListener> terrainListeners = new CopyOnWriteArrayList<>();
     /**
      * Existing keys in the maze
      */
@@ -60,21 +111,59 @@ public class MazeClass implements Maze {
     public MazeClass(int rows, int cols) {
         this.numOfRows = rows + 2;
         this.numOfCols = cols + 2;
-        this.fields = new ArrayList<List<Field>>();
-        for (int row = 0; row < this.numOfRows; row++) {
-            fields.add(new ArrayList<Field>(cols));
-            for (int column = 0; column < this.numOfCols; column++) {
-                if (row == 0 || column == 0 || row == (this.numOfRows - 1) || column == (this.numOfCols - 1)) {
-                    WallField field = new WallField(row, column);
-                    field.setMaze(this);
-                    this.fields.get(row).add(field);
-                } else {
-                    this.fields.get(row).add(null);
-                }
-            }
+        // every cell is a wall until the configuration says otherwise, border stays a wall
+        this.grid = new TileGrid(this.numOfRows, this.numOfCols);
+        this.walls = new BitBoard(this.grid.size());
+        this.walls.setAll();
+        this.pellets = new BitBoard(this.grid.size());
+        this.keyCells = new BitBoard(this.grid.size());
+        this.occupancy = new BitBoard(this.grid.size());
+        this.offsets = new int[DIRECTIONS.length];
+        for (Field.Direction dir : DIRECTIONS) {
+            this.offsets[dir.ordinal()] = switch (dir) {
+                case D -> this.numOfCols;
+                case L -> -1;
+                case R -> 1;
+                case U -> -this.numOfCols;
+            };
         }
     }
 
+    /**
+     * Constructor of a maze sharing terrain, adjacency and the point layer with a template. Shared data are copied
+     * on the first change, objects are placed to the maze afterwards.
+     *
+     * @param template template of the maze
+     */
+    MazeClass(MazeTemplate template) {
+        this.numOfRows = template.rows() + 2;
+        this.numOfCols = template.cols() + 2;
+        this.grid = template.grid().share();
+        this.walls = template.walls().share();
+        this.pellets = template.pellets().share();
+        this.keyCells = new BitBoard(this.grid.size());
+        this.occupancy = new BitBoard(this.grid.size());
+        this.offsets = template.offsets();
+    }
+
+    /**
+     * Returns difference of cell ids between a cell and its neighbour for every direction.
+     *
+     * @return offsets indexed by direction ordinal, shared and not to be changed
+     */
+    int[] offsets() {
+        return this.offsets;
+    }
+
+    /**
+     * Returns packed terrain of the maze.
+     *
+     * @return grid of the maze
+     */
+    TileGrid grid() {
+        return this.grid;
+    }
+
     /**
      * Associates ghosts with the maze.
      *
@@ -82,6 +171,7 @@ public class MazeClass implements Maze {
      */
     public void setGhosts(List<MazeObject> ghosts) {
         this.ghosts = ghosts;
+        this.ghostsView = Collections.unmodifiableList(ghosts);
     }
 
     /**
@@ -102,10 +192,417 @@ public class MazeClass implements Maze {
      */
     @Override
     public Field getField(int row, int col) {
+        int cell = cellId(row, col);
+        return cell < 0 ? null : getField(cell);
+    }
+
+    /**
+     * Returns a field with a given cell id. Field is created from the terrain on the first access.
+     *
+     * @param cell cell id
+     * @return Field with the given cell id
+     */
+    @Override
+    public Field getField(int cell) {
+        Field field = this.grid.field(cell);
+        if (field == null) {
+            int row = cell / this.numOfCols;
+            int col = cell % this.numOfCols;
+            field = switch (this.grid.terrain(cell)) {
+                case TileGrid.PATH -> new PathField(row, col);
+                case TileGrid.TARGET -> new TargetField(row, col);
+                default -> new WallField(row, col);
+            };
+            field.setMaze(this);
+            this.grid.setField(cell, field);
+        }
+        return field;
+    }
+
+    /**
+     * Returns cell id of a given position.
+     *
+     * @param row row of the cell
+     * @param col column of the cell
+     * @return cell id or -1 if the position is outside the maze
+     */
+    @Override
+    public int cellId(int row, int col) {
         if (row < 0 || row >= this.numOfRows || col < 0 || col >= this.numOfCols) {
-            return null;
+            return -1;
         }
-        return this.fields.get(row).get(col);
+        return row * this.numOfCols + col;
+    }
+
+    /**
+     * Returns row of a given cell.
+     *
+     * @param cell cell id
+     * @return row of the cell
+     */
+    @Override
+    public int cellRow(int cell) {
+        return cell / this.numOfCols;
+    }
+
+    /**
+     * Returns column of a given cell.
+     *
+     * @param cell cell id
+     * @return column of the cell
+     */
+    @Override
+    public int cellCol(int cell) {
+        return cell % this.numOfCols;
+    }
+
+    /**
+     * Returns number of cells in the maze.
+     *
+     * @return number of cells
+     */
+    @Override
+    public int numCells() {
+        return this.grid.size();
+    }
+
+    /**
+     * Checks whether a given cell can be passed through without creating its field.
+     *
+     * @param cell cell id
+     * @return true if the cell is path or target, false otherwise
+     */
+    @Override
+    public boolean isPassable(int cell) {
+        return this.grid.terrain(cell) != TileGrid.WALL;
+    }
+
+    /**
+     * Returns id of the neighbouring cell in the given direction.
+     *
+     * @param cell cell id
+     * @param dir  direction
+     * @return id of the neighbouring cell or -1 if it is outside the maze
+     */
+    @Override
+    public int neighbour(int cell, Field.Direction dir) {
+        int next = cell + this.offsets[dir.ordinal()];
+        return switch (dir) {
+            case L -> cell % this.numOfCols == 0 ? -1 : next;
+            case R -> next % this.numOfCols == 0 ? -1 : next;
+            default -> next < 0 || next >= this.grid.size() ? -1 : next;
+        };
+    }
+
+    /**
+     * Checks whether the neighbouring cell in the given direction can be entered. Reads the precomputed adjacency
+     * table only.
+     *
+     * @param cell cell id
+     * @param dir  direction
+     * @return true if the neighbour is passable, false otherwise
+     */
+    @Override
+    public boolean canMove(int cell, Field.Direction dir) {
+        return (this.grid.exits(cell) & (1 << dir.ordinal())) != 0;
+    }
+
+    /**
+     * Returns bitmask of passable neighbours of the cell.
+     *
+     * @param cell cell id
+     * @return bitmask where bit {@code 1 << dir.ordinal()} is set for every passable direction
+     */
+    @Override
+    public int exits(int cell) {
+        return this.grid.exits(cell);
+    }
+
+    /**
+     * Builds the adjacency table of the whole maze. Called once the maze is loaded.
+     */
+    void buildAdjacency() {
+        for (int cell = 0; cell < this.grid.size(); cell++) {
+            // walls never have exits, skipping them keeps wall chunks shared
+            if (isPassable(cell)) {
+                updateExits(cell);
+            }
+        }
+    }
+
+    /**
+     * Recomputes passable directions of a single cell.
+     *
+     * @param cell cell id
+     */
+    private void updateExits(int cell) {
+        int mask = 0;
+        if (isPassable(cell)) {
+            for (Field.Direction dir : DIRECTIONS) {
+                int next = neighbour(cell, dir);
+                if (next >= 0 && isPassable(next)) {
+                    mask |= 1 << dir.ordinal();
+                }
+            }
+        }
+        this.grid.setExits(cell, (byte) mask);
+    }
+
+    /**
+     * Returns terrain code of a cell without creating its field.
+     *
+     * @param cell cell id
+     * @return terrain code from {@link TileGrid}
+     */
+    byte terrain(int cell) {
+        return this.grid.terrain(cell);
+    }
+
+    /**
+     * Sets terrain of a cell without creating its field. Used during maze configuration.
+     *
+     * @param row     row of the cell
+     * @param col     column of the cell
+     * @param terrain terrain code from {@link TileGrid}
+     */
+    void setTerrain(int row, int col, byte terrain) {
+        int cell = row * this.numOfCols + col;
+        this.grid.setTerrain(cell, terrain);
+        this.walls.set(cell, terrain == TileGrid.WALL);
+        this.pellets.set(cell, terrain == TileGrid.PATH);
+    }
+
+    /**
+     * Places field to its position in the maze. Used during maze configuration.
+     *
+     * @param field field to be placed
+     */
+    void setField(Field field) {
+        int cell = field.getRow() * this.numOfCols + field.getCol();
+        field.setMaze(this);
+        this.grid.setTerrain(cell, TileGrid.codeOf(field));
+        this.grid.setField(cell, field);
+        this.walls.set(cell, !field.canMove());
+        this.pellets.set(cell, field.hasPoint());
+        this.keyCells.set(cell, field.hasKey() && !field.getKey().collected);
+        this.occupancy.set(cell, field instanceof PathField path && path.hasMovingObject());
+    }
+
+    /**
+     * Updates the point layer. Called by {@link PathField} when its point changes.
+     *
+     * @param cell    cell id
+     * @param present true if the cell contains a point
+     */
+    void pelletChanged(int cell, boolean present) {
+        this.pellets.set(cell, present);
+    }
+
+    /**
+     * Updates the key layer. Called by {@link PathField} when a key is put on it.
+     *
+     * @param cell    cell id
+     * @param present true if the cell contains a key that was not collected
+     */
+    void keyChanged(int cell, boolean present) {
+        this.keyCells.set(cell, present);
+    }
+
+    /**
+     * Updates the occupancy layer. Called by {@link PathField} when pacman or a ghost enters or leaves it.
+     *
+     * @param cell     cell id
+     * @param occupied true if pacman or a ghost is on the cell
+     */
+    void occupancyChanged(int cell, boolean occupied) {
+        this.occupancy.set(cell, occupied);
+    }
+
+    /**
+     * Updates the occupancy index. Called by {@link PathField} when pacman or a ghost is put on it.
+     *
+     * @param object pacman or a ghost
+     * @param cell   cell id of the field
+     */
+    void objectEntered(MazeObject object, int cell) {
+        if (object instanceof GhostObject ghost) {
+            this.ghostPopulation.entered(ghost.getId(), cell);
+        } else {
+            this.pacmanPreviousCell = this.pacmanCell;
+            this.pacmanCell = cell;
+        }
+    }
+
+    /**
+     * Returns current cell of a ghost from the ghost population.
+     *
+     * @param id id of the ghost
+     * @return cell id or -1 if there is no such ghost
+     */
+    public int ghostCell(int id) {
+        return id < this.ghostPopulation.size() ? this.ghostPopulation.cell(id) : -1;
+    }
+
+    /**
+     * Finds ghosts colliding with pacman. A ghost collides if it is on the same cell as pacman or if it has just
+     * swapped cells with pacman, so that they passed through each other between two checks. Only the cell of
+     * pacman and the cell pacman came from are looked at.
+     *
+     * @param out array for ids of colliding ghosts, at least {@link #ghostCount()} long
+     * @return number of ids written to {@code out}
+     */
+    @Override
+    public int collectCollisions(int[] out) {
+        if (this.pacmanCell < 0) {
+            return 0;
+        }
+        int count = 0;
+        PathField here = (PathField) this.grid.field(this.pacmanCell);
+        for (int id = here.nextGhost(0); id >= 0; id = here.nextGhost(id + 1)) {
+            out[count++] = id;
+        }
+        if (this.pacmanPreviousCell >= 0 && this.grid.field(this.pacmanPreviousCell) instanceof PathField previous) {
+            for (int id = previous.nextGhost(0); id >= 0; id = previous.nextGhost(id + 1)) {
+                if (this.ghostPopulation.previousCell(id) == this.pacmanCell) {
+                    out[count++] = id;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns number of points that were not collected yet.
+     *
+     * @return number of remaining points
+     */
+    @Override
+    public int pelletsRemaining() {
+        return this.pellets.cardinality();
+    }
+
+    /**
+     * Checks whether any point remains in the rectangular region.
+     *
+     * @param row0 first row of the region
+     * @param col0 first column of the region
+     * @param row1 last row of the region, inclusive
+     * @param col1 last column of the region, inclusive
+     * @return true if the region contains a point, false otherwise
+     */
+    @Override
+    public boolean anyPelletIn(int row0, int col0, int row1, int col1) {
+        row0 = Math.max(row0, 0);
+        col0 = Math.max(col0, 0);
+        row1 = Math.min(row1, this.numOfRows - 1);
+        col1 = Math.min(col1, this.numOfCols - 1);
+        for (int row = row0; row <= row1 && col0 <= col1; row++) {
+            int first = row * this.numOfCols;
+            if (this.pellets.any(first + col0, first + col1 + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns all cells reachable from the given cell. Computed as a word-wide flood fill over the wall layer.
+     *
+     * @param cell cell id of the start
+     * @return board of reachable cells, empty if the start is a wall
+     */
+    public BitBoard reachableFrom(int cell) {
+        BitBoard reach = new BitBoard(this.grid.size());
+        if (!isPassable(cell)) {
+            return reach;
+        }
+        BitBoard open = new BitBoard(this.grid.size());
+        open.setAll();
+        open.andNot(this.walls);
+        BitBoard scratch = new BitBoard(this.grid.size());
+        reach.set(cell);
+        while (reach.grow(this.numOfCols, open, scratch)) {
+            // grow until nothing new is reached
+        }
+        return reach;
+    }
+
+    /**
+     * Checks whether one cell can be reached from another one.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return true if there is a path between the cells, false otherwise
+     */
+    @Override
+    public boolean isReachable(int from, int to) {
+        return reachableFrom(from).get(to);
+    }
+
+    /**
+     * Returns version of the maze topology. The version changes whenever a wall becomes passable or the other way.
+     *
+     * @return topology version
+     */
+    @Override
+    public int topologyVersion() {
+        return this.topologyVersion;
+    }
+
+    /**
+     * Adds a listener notified about changes of passable cells.
+     *
+     * @param listener listener to be added
+     */
+    @Override
+    public void addTerrainListener(TerrainListener listener) {
+        this.terrainListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener of changes of passable cells.
+     *
+     * @param listener listener to be removed
+     */
+    @Override
+    public void removeTerrainListener(TerrainListener listener) {
+        this.terrainListeners.remove(listener);
+    }
+
+    /**
+     * Returns the wall layer of the maze.
+     *
+     * @return cells that are walls
+     */
+    BitBoard walls() {
+        return this.walls;
+    }
+
+    /**
+     * Returns the point layer of the maze.
+     *
+     * @return cells that contain a point
+     */
+    BitBoard pellets() {
+        return this.pellets;
+    }
+
+    /**
+     * Returns the key layer of the maze.
+     *
+     * @return cells that contain a key which was not collected
+     */
+    BitBoard keyCells() {
+        return this.keyCells;
+    }
+
+    /**
+     * Returns the occupancy layer of the maze.
+     *
+     * @return cells occupied by pacman or a ghost
+     */
+    BitBoard occupancy() {
+        return this.occupancy;
     }
 
     /**
@@ -114,8 +611,24 @@ public class MazeClass implements Maze {
      * @param newF new field
      */
     public void swapFields(Field oldF, Field newF){
-        newF.setMaze(this);
-        this.fields.get(oldF.getRow()).set(oldF.getCol(),  newF);
+        boolean topologyChanged = oldF.canMove() != newF.canMove();
+        if (topologyChanged) {
+            this.topologyVersion++;
+        }
+        setField(newF);
+        int cell = newF.getCellId();
+        updateExits(cell);
+        for (Field.Direction dir : DIRECTIONS) {
+            int next = neighbour(cell, dir);
+            if (next >= 0) {
+                updateExits(next);
+            }
+        }
+        if (topologyChanged) {
+            for (TerrainListener listener : this.terrainListeners) {
+                listener.terrainChanged(this, cell);
+            }
+        }
         for(Observable.Observer ob : oldF.getObservers()){
             newF.addObserver(ob);
             ((FieldView) ob).setModel(newF);
@@ -130,13 +643,44 @@ public class MazeClass implements Maze {
 
 
     /**
-     * Returns ghosts in the maze.
+     * Returns ghosts in the maze. The list is a read-only view, it is not copied.
      *
      * @return List of ghosts
      */
     @Override
     public List<MazeObject> getGhosts() {
-        return new ArrayList<>(this.ghosts);
+        return this.ghostsView;
+    }
+
+    /**
+     * Returns a ghost by its id.
+     *
+     * @param id id of the ghost
+     * @return ghost with the given id
+     */
+    @Override
+    public MazeObject getGhost(int id) {
+        return this.ghosts.get(id);
+    }
+
+    /**
+     * Returns number of ghosts in the maze.
+     *
+     * @return number of ghosts
+     */
+    @Override
+    public int ghostCount() {
+        return this.ghosts.size();
+    }
+
+    /**
+     * Returns the population holding the state of all ghosts in the maze.
+     *
+     * @return population of the ghosts
+     */
+    @Override
+    public GhostPopulation getGhostPopulation() {
+        return this.ghostPopulation;
     }
 
     /**
@@ -178,10 +722,7 @@ public class MazeClass implements Maze {
     @Override
     public void moveObjectsToStart() throws GameException {
         PacMan.moveToStart();
-        for (MazeObject mazeObject : ghosts) {
-            GhostObject ghost = (GhostObject) mazeObject;
-            ghost.moveToStart();
-        }
+        this.ghostPopulation.moveAllToStart();
     }
 
     /**
@@ -194,6 +735,9 @@ public class MazeClass implements Maze {
         if (key != null) {
             this.keysToCollect++;
             this.keys.add(key);
+            if (key.getField() != null) {
+                this.keyCells.set(key.getField().getCellId());
+            }
             return true;
         }
         return false;
@@ -209,6 +753,7 @@ public class MazeClass implements Maze {
         this.keysToCollect--;
         this.keys.remove(key);
         this.oldKeys.add(key);
+        this.keyCells.clear(key.getField().getCellId());
     }
 
     /**
@@ -1,7 +1,12 @@
 package ija.project.game;
 
 import ija.project.common.*;
+
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Class representing maze configuration. It reads the maze from the file and creates a maze.
@@ -32,6 +37,157 @@ public class MazeConfigure {
      * A maze to be configured
      */
     private MazeClass maze;
+    /**
+     * Indicates whether the maze shares adjacency of a template and does not need to build it
+     */
+    private boolean adjacencyShared;
+    /**
+     * Minimal number of lines that are parsed in parallel by {@link #processLines}
+     */
+    private static final int PARALLEL_THRESHOLD = 4 * TileGrid.CHUNK_SIZE;
+
+    /**
+     * Result of parsing a block of rows. Keeps cells with objects in row order and the first error.
+     */
+    private static final class RowBlock {
+        /**
+         * Cell ids of cells that contain an object or the target
+         */
+        int[] cells = new int[8];
+        /**
+         * Map characters of those cells
+         */
+        byte[] characters = new byte[8];
+        /**
+         * Number of recorded cells
+         */
+        int size;
+        /**
+         * Position of the first byte that could not be processed, -1 if there is none
+         */
+        int error = -1;
+
+        /**
+         * Records a cell with an object.
+         *
+         * @param cell      cell id
+         * @param character map character of the cell
+         */
+        void add(int cell, byte character) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+                characters = Arrays.copyOf(characters, size * 2);
+            }
+            cells[size] = cell;
+            characters[size++] = character;
+        }
+
+        /**
+         * Appends a block that follows this one.
+         *
+         * @param next block of the following rows
+         * @return this block
+         */
+        RowBlock append(RowBlock next) {
+            if (error < 0) {
+                error = next.error;
+            }
+            for (int i = 0; i < next.size; i++) {
+                add(next.cells[i], next.characters[i]);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Task parsing a range of lines. Walls and paths are written directly into the maze, other cells are recorded
+     * and created later in row order.
+     */
+    private final class RowTask extends RecursiveTask<RowBlock> {
+        /**
+         * Bytes of the map file
+         */
+        private final ByteBuffer data;
+        /**
+         * Position of the first byte of every line
+         */
+        private final int[] offsets;
+        /**
+         * Length of every line
+         */
+        private final int[] lengths;
+        /**
+         * First line of the range
+         */
+        private final int from;
+        /**
+         * Line after the last line of the range
+         */
+        private final int to;
+        /**
+         * Maze row of the first line of the whole input
+         */
+        private final int firstRow;
+        /**
+         * Maximal number of lines parsed without splitting
+         */
+        private final int leaf;
+
+        /**
+         * Constructor.
+         *
+         * @param data     bytes of the map file
+         * @param offsets  position of the first byte of every line
+         * @param lengths  length of every line
+         * @param from     first line of the range
+         * @param to       line after the last line of the range
+         * @param firstRow maze row of the first line of the whole input
+         * @param leaf     maximal number of lines parsed without splitting
+         */
+        RowTask(ByteBuffer data, int[] offsets, int[] lengths, int from, int to, int firstRow, int leaf) {
+            this.data = data;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.from = from;
+            this.to = to;
+            this.firstRow = firstRow;
+            this.leaf = leaf;
+        }
+
+        @Override
+        protected RowBlock compute() {
+            if (to - from > leaf) {
+                // split on a chunk boundary of the maze so that tasks never share a chunk or a bitboard word
+                int middle = ((firstRow + (from + to) / 2) & -TileGrid.CHUNK_SIZE) - firstRow;
+                if (middle <= from) {
+                    middle += TileGrid.CHUNK_SIZE;
+                }
+                if (middle < to) {
+                    RowTask right = new RowTask(data, offsets, lengths, middle, to, firstRow, leaf);
+                    right.fork();
+                    RowBlock left = new RowTask(data, offsets, lengths, from, middle, firstRow, leaf).compute();
+                    return left.append(right.join());
+                }
+            }
+            RowBlock block = new RowBlock();
+            for (int line = from; line < to && block.error < 0; line++) {
+                int row = firstRow + line;
+                for (int c = 0; c < lengths[line]; c++) {
+                    byte character = data.get(offsets[line] + c);
+                    switch (character) {
+                        case '.' -> maze.setTerrain(row, c + 1, TileGrid.PATH);
+                        case 'X', 'x' -> maze.setTerrain(row, c + 1, TileGrid.WALL);
+                        case 'S', 's', 'G', 'g', 'T', 't', 'K', 'k' -> block.add(maze.cellId(row, c + 1), character);
+                        default -> block.error = offsets[line] + c;
+                    }
+                    if (block.error >= 0) {
+                        break;
+                    }
+                }
+            }
+            return block;
+        }
+    }
 
     /**
      * Constructor for MazeConfigure.
@@ -54,6 +210,20 @@ public class MazeConfigure {
         this.cols = this.maze.numCols();
     }
 
+    /**
+     * Initializes a maze sharing terrain of the template. All rows are considered processed, only objects are
+     * placed by {@link #processObject}.
+     *
+     * @param template template of the maze
+     */
+    void startReading(MazeTemplate template) {
+        this.maze = new MazeClass(template);
+        this.rows = this.maze.numRows();
+        this.cols = this.maze.numCols();
+        this.adjacencyShared = true;
+        markRowsProcessed();
+    }
+
     /**
      * Processes the line of the maze.
      *
@@ -68,68 +238,188 @@ public class MazeConfigure {
             return false;
         }
         for (int c = 0; c < line.length(); c++) {
-            char character = line.charAt(c);
-            switch (character) {
-                case '.' -> {
-                    PathField pathField = new PathField(this.rowToBeProcessed, c + 1);
-                    pathField.setMaze(this.maze);
-                    this.maze.fields.get(this.rowToBeProcessed).set(c + 1, pathField);
-                }
-                case 'X', 'x' -> {
-                    WallField wallField = new WallField(this.rowToBeProcessed, c + 1);
-                    wallField.setMaze(this.maze);
-                    this.maze.fields.get(this.rowToBeProcessed).set(c + 1, wallField);
-                }
-                case 'S', 's' -> {
-                    PathField startField = new PathField(this.rowToBeProcessed, c + 1);
-                    startField.setMaze(this.maze);
-                    PacmanObject pacmanObject1 = new PacmanObject(startField);
-                    this.maze.fields.get(this.rowToBeProcessed).set(c + 1, startField);
-                    try {
-                        startField.put(pacmanObject1);
-                    } catch (GameException e) {
-                        throw new RuntimeException(e);
-                    }
-                    this.maze.setPacMan(pacmanObject1);
-                }
-                case 'G', 'g' -> {
-                    PathField field = new PathField(this.rowToBeProcessed, c + 1);
-                    field.setMaze(this.maze);
-                    GhostObject ghostObject = new GhostObject(field, ghosts.size());
-                    this.maze.fields.get(this.rowToBeProcessed).set(c + 1, field);
-                    try {
-                        field.put(ghostObject);
-                    } catch (GameException e) {
-                        throw new RuntimeException(e);
-                    }
-                    this.ghosts.add(ghostObject);
+            if (!processCell(this.rowToBeProcessed, c + 1, line.charAt(c))) {
+                System.err.println("Chybny vstupny prvok pola.");
+                this.errorIndicator = false;
+                return false;
+            }
+        }
+        this.rowToBeProcessed += 1;
+        return true;
+    }
+
+    /**
+     * Processes the line of the maze directly from bytes of the map file. No string is created for the line.
+     *
+     * @param data   bytes of the map file
+     * @param offset position of the first byte of the line
+     * @param length length of the line without line terminator
+     * @return -1 if the line was processed, otherwise position of the first byte that could not be processed
+     */
+    public int processLine(ByteBuffer data, int offset, int length) {
+        if ((this.cols - 2) != length) {
+            this.errorIndicator = true;
+            return offset + Math.min(length, this.cols - 2);
+        }
+        for (int c = 0; c < length; c++) {
+            if (!processCell(this.rowToBeProcessed, c + 1, data.get(offset + c))) {
+                this.errorIndicator = true;
+                return offset + c;
+            }
+        }
+        this.rowToBeProcessed += 1;
+        return -1;
+    }
+
+    /**
+     * Processes several lines of the maze directly from bytes of the map file. When there are enough lines, they are
+     * split into blocks of rows aligned to {@link TileGrid#CHUNK_SIZE} and parsed in parallel on the common
+     * fork-join pool, every block writing only its own chunks. Pacman, ghosts, keys and target found in the blocks
+     * are created afterwards in row order, so ghost ids are the same as with {@link #processLine(String)}.
+     *
+     * @param data    bytes of the map file
+     * @param offsets position of the first byte of every line
+     * @param lengths length of every line without line terminator
+     * @param count   number of lines to be processed
+     * @return -1 if all lines were processed, otherwise position of the first byte that could not be processed
+     */
+    public int processLines(ByteBuffer data, int[] offsets, int[] lengths, int count) {
+        for (int i = 0; i < count; i++) {
+            if (lengths[i] != this.cols - 2) {
+                this.errorIndicator = true;
+                return offsets[i] + Math.min(lengths[i], this.cols - 2);
+            }
+        }
+        if (count < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < count; i++) {
+                int error = processLine(data, offsets[i], lengths[i]);
+                if (error >= 0) {
+                    return error;
                 }
-                case 'T', 't' -> {
-                    TargetField target = new TargetField(this.rowToBeProcessed, c + 1);
-                    target.setMaze(this.maze);
-                    this.maze.fields.get(this.rowToBeProcessed).set(c + 1, target);
-                    this.maze.target = target;
+            }
+            return -1;
+        }
+        int leaf = Math.max(TileGrid.CHUNK_SIZE,
+                count / (ForkJoinPool.getCommonPoolParallelism() * 4) & -TileGrid.CHUNK_SIZE);
+        RowBlock result = ForkJoinPool.commonPool()
+                .invoke(new RowTask(data, offsets, lengths, 0, count, this.rowToBeProcessed, leaf));
+        if (result.error >= 0) {
+            this.errorIndicator = true;
+            return result.error;
+        }
+        for (int i = 0; i < result.size; i++) {
+            int cell = result.cells[i];
+            processCell(this.maze.cellRow(cell), this.maze.cellCol(cell), result.characters[i]);
+        }
+        this.rowToBeProcessed += count;
+        return -1;
+    }
+
+    /**
+     * Returns number of rows of the map that were already processed.
+     *
+     * @return number of processed rows
+     */
+    public int processedRows() {
+        return this.rowToBeProcessed - 1;
+    }
+
+    /**
+     * Fills a run of cells in one row with the same terrain. Used when loading a compiled maze, where all terrain
+     * is written in runs first and objects are placed by {@link #processObject} afterwards.
+     *
+     * @param row     row of the first cell
+     * @param col     column of the first cell
+     * @param length  number of cells in the run
+     * @param terrain terrain code from {@link TileGrid}
+     */
+    void processRun(int row, int col, int length, byte terrain) {
+        if (terrain == TileGrid.WALL) {
+            // cells are walls from the start
+            return;
+        }
+        for (int c = col; c < col + length; c++) {
+            this.maze.setTerrain(row, c, terrain);
+        }
+    }
+
+    /**
+     * Places pacman, a ghost, a key or the target to the cell.
+     *
+     * @param row       row of the cell
+     * @param col       column of the cell
+     * @param character map character of the object
+     * @return True if the character is valid, false otherwise
+     */
+    boolean processObject(int row, int col, int character) {
+        return processCell(row, col, character);
+    }
+
+    /**
+     * Marks all rows of the maze as processed. Used when the maze was filled by {@link #processRun}.
+     */
+    void markRowsProcessed() {
+        this.rowToBeProcessed = this.rows - 1;
+    }
+
+    /**
+     * Creates content of one cell of the maze according to its character from the map.
+     *
+     * @param row       row of the cell
+     * @param col       column of the cell
+     * @param character character from the map
+     * @return True if the character is valid, false otherwise
+     */
+    private boolean processCell(int row, int col, int character) {
+        switch (character) {
+            case '.' -> this.maze.setTerrain(row, col, TileGrid.PATH);
+            case 'X', 'x' -> this.maze.setTerrain(row, col, TileGrid.WALL);
+            case 'S', 's' -> {
+                PathField startField = new PathField(row, col);
+                startField.setMaze(this.maze);
+                PacmanObject pacmanObject1 = new PacmanObject(startField);
+                this.maze.setField(startField);
+                try {
+                    startField.put(pacmanObject1);
+                } catch (GameException e) {
+                    throw new RuntimeException(e);
                 }
-                case 'K', 'k' -> {
-                    PathField keyField = new PathField(this.rowToBeProcessed, c + 1);
-                    keyField.setMaze(this.maze);
-                    KeyObject key = new KeyObject(keyField);
-                    try {
-                        keyField.put(key);
-                    } catch (GameException e) {
-                        throw new RuntimeException(e);
-                    }
-                    this.maze.addKey(key);
-                    this.maze.fields.get(this.rowToBeProcessed).set(c + 1, keyField);
+                this.maze.setPacMan(pacmanObject1);
+            }
+            case 'G', 'g' -> {
+                PathField field = new PathField(row, col);
+                field.setMaze(this.maze);
+                GhostObject ghostObject = new GhostObject(field, ghosts.size());
+                this.maze.setField(field);
+                try {
+                    field.put(ghostObject);
+                } catch (GameException e) {
+                    throw new RuntimeException(e);
                 }
-                default -> {
-                    System.err.println("Chybny vstupny prvok pola.");
-                    this.errorIndicator = false;
-                    return false;
+                this.ghosts.add(ghostObject);
+            }
+            case 'T', 't' -> {
+                TargetField target = new TargetField(row, col);
+                target.setMaze(this.maze);
+                this.maze.setField(target);
+                this.maze.target = target;
+            }
+            case 'K', 'k' -> {
+                PathField keyField = new PathField(row, col);
+                keyField.setMaze(this.maze);
+                KeyObject key = new KeyObject(keyField);
+                try {
+                    keyField.put(key);
+                } catch (GameException e) {
+                    throw new RuntimeException(e);
                 }
+                this.maze.addKey(key);
+                this.maze.setField(keyField);
+            }
+            default -> {
+                return false;
             }
         }
-        this.rowToBeProcessed += 1;
         return true;
     }
 
@@ -155,6 +445,9 @@ public class MazeConfigure {
     public Maze createMaze() {
         if (!this.errorIndicator) {
             maze.setGhosts(this.ghosts);
+            if (!this.adjacencyShared) {
+                maze.buildAdjacency();
+            }
             return maze;
         }
         return null;
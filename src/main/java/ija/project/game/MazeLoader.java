@@ -0,0 +1,205 @@
+package ija.project.game;
+
+import ija.project.common.Maze;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class loading the maze from a map file. The file is parsed byte by byte straight into the maze storage without
+ * creating a string per line. Large files are memory-mapped, small files are read into a heap buffer so that they
+ * are not kept mapped (and locked on some systems) after loading.
+ * <p>
+ * The format is the text format of {@code data/mapaNN.txt}: a header line {@code rows cols [anything]} followed by
+ * {@code rows} lines of the maze. Reading stops at the first empty line, so log files with a map header can be
+ * loaded too.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class MazeLoader {
+    /**
+     * Files from this size on are memory-mapped instead of read
+     */
+    private static final long MAP_THRESHOLD = 64 * 1024;
+
+    /**
+     * Bytes of the map file
+     */
+    private final ByteBuffer data;
+    /**
+     * Name of the loaded file used in error messages
+     */
+    private final String source;
+    /**
+     * Position of the next byte to be parsed
+     */
+    private int pos;
+
+    /**
+     * Constructor.
+     *
+     * @param data   bytes of the map file
+     * @param source name of the file used in error messages
+     */
+    private MazeLoader(ByteBuffer data, String source) {
+        this.data = data;
+        this.source = source;
+        this.pos = 0;
+    }
+
+    /**
+     * Loads the maze from a map file.
+     *
+     * @param path path to the map file
+     * @return loaded maze
+     * @throws IOException if the file cannot be read or does not contain a valid maze, the message contains the
+     *                     byte offset of the problem
+     */
+    public static Maze load(Path path) throws IOException {
+        return new MazeLoader(read(path), path.toString()).parse();
+    }
+
+    /**
+     * Reads the whole file into a buffer, large files are memory-mapped.
+     *
+     * @param path path to the file
+     * @return buffer with the content of the file
+     * @throws IOException if the file cannot be read
+     */
+    static ByteBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + ": map file is too large");
+            }
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until the buffer is full
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Parses the header and all lines of the maze.
+     *
+     * @return loaded maze
+     * @throws IOException if the content is not a valid maze
+     */
+    private Maze parse() throws IOException {
+        int rows = parseNumber("number of rows");
+        int cols = parseNumber("number of columns");
+        int header = pos;
+        skipLine();
+        // the header must not allocate more than the lines in the file can fill
+        long remaining = data.limit() - pos;
+        if ((long) (rows + 2) * (cols + 2) > Integer.MAX_VALUE) {
+            throw formatError(header, "maze of " + rows + "x" + cols + " is too large");
+        }
+        if (rows > remaining || (long) rows * cols > remaining) {
+            throw formatError(header, "maze of " + rows + "x" + cols + " does not fit in the remaining "
+                    + remaining + " bytes");
+        }
+
+        // find the lines first, then parse them, in parallel for large maps
+        int[] offsets = new int[rows];
+        int[] lengths = new int[rows];
+        int count = 0;
+        while (count < rows && pos < data.limit()) {
+            int start = pos;
+            int end = lineEnd(start);
+            if (end == start) {
+                break;
+            }
+            if (end - start != cols) {
+                throw formatError(start + Math.min(end - start, cols),
+                        "line " + (count + 2) + " has " + (end - start) + " cells, expected " + cols);
+            }
+            offsets[count] = start;
+            lengths[count++] = end - start;
+            skipLine();
+        }
+
+        MazeConfigure cfg = new MazeConfigure();
+        cfg.startReading(rows, cols);
+        int error = cfg.processLines(data, offsets, lengths, count);
+        if (error >= 0) {
+            throw formatError(error, "unexpected character '" + (char) (data.get(error) & 0xFF) + "'");
+        }
+        if (!cfg.stopReading()) {
+            throw formatError(pos, "expected " + rows + " lines of the maze, found " + cfg.processedRows());
+        }
+        return cfg.createMaze();
+    }
+
+    /**
+     * Parses a non-negative decimal number, leading spaces and tabs are skipped.
+     *
+     * @param what description of the number used in error messages
+     * @return parsed number
+     * @throws IOException if there is no number at the current position
+     */
+    private int parseNumber(String what) throws IOException {
+        while (pos < data.limit() && (data.get(pos) == ' ' || data.get(pos) == '\t')) {
+            pos++;
+        }
+        int start = pos;
+        long value = 0;
+        while (pos < data.limit() && data.get(pos) >= '0' && data.get(pos) <= '9') {
+            value = value * 10 + (data.get(pos) - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw formatError(start, what + " is too large");
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw formatError(pos, "expected " + what);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns end of the line starting at the given position, line terminator is not included.
+     *
+     * @param start position of the first byte of the line
+     * @return position just after the last byte of the line content
+     */
+    private int lineEnd(int start) {
+        int end = start;
+        while (end < data.limit() && data.get(end) != '\n') {
+            end++;
+        }
+        if (end > start && data.get(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Moves the position after the end of the current line.
+     */
+    private void skipLine() {
+        while (pos < data.limit() && data.get(pos) != '\n') {
+            pos++;
+        }
+        if (pos < data.limit()) {
+            pos++;
+        }
+    }
+
+    /**
+     * Creates exception describing a problem at the given byte offset.
+     *
+     * @param offset  byte offset of the problem
+     * @param message description of the problem
+     * @return exception to be thrown
+     */
+    private IOException formatError(int offset, String message) {
+        return new IOException(source + ": " + message + " at byte offset " + offset);
+    }
+}
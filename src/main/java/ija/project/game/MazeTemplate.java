@@ -0,0 +1,177 @@
+package ija.project.game;
+
+import ija.project.common.Maze;
+import ija.project.common.MazeObject;
+
+/**
+ * Class representing immutable template of a maze. The template keeps terrain, adjacency, points and start positions
+ * of objects of a loaded maze. Every {@link #newGame()} creates a maze that shares terrain with the template and
+ * copies only the chunks and layers it changes, so starting a game does not read and parse the map again.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class MazeTemplate {
+    /**
+     * Number of rows of the map without the border
+     */
+    private final int rows;
+    /**
+     * Number of columns of the map without the border
+     */
+    private final int cols;
+    /**
+     * Terrain and adjacency, never written by the template
+     */
+    private final TileGrid grid;
+    /**
+     * Wall layer
+     */
+    private final BitBoard walls;
+    /**
+     * Point layer at the start of the game
+     */
+    private final BitBoard pellets;
+    /**
+     * Neighbour offsets of the maze
+     */
+    private final int[] offsets;
+    /**
+     * Cell of pacman, -1 if there is none
+     */
+    private final int pacmanCell;
+    /**
+     * Cell of the target, -1 if there is none
+     */
+    private final int targetCell;
+    /**
+     * Start cells of ghosts in the order of their ids
+     */
+    private final int[] ghostCells;
+    /**
+     * Cells of keys
+     */
+    private final int[] keyCells;
+
+    /**
+     * Constructor.
+     *
+     * @param maze maze that was just loaded and not played yet
+     */
+    private MazeTemplate(MazeClass maze) {
+        this.rows = maze.numRows() - 2;
+        this.cols = maze.numCols() - 2;
+        this.grid = maze.grid().share();
+        this.walls = maze.walls().share();
+        this.pellets = maze.pellets().share();
+        this.offsets = maze.offsets();
+        this.pacmanCell = maze.getPacMan() == null ? -1 : maze.getPacMan().getStartField().getCellId();
+        this.targetCell = maze.getTarget() == null ? -1 : maze.getTarget().getCellId();
+        this.ghostCells = new int[maze.getGhosts().size()];
+        int i = 0;
+        for (MazeObject ghost : maze.getGhosts()) {
+            this.ghostCells[i++] = ghost.getStartField().getCellId();
+        }
+        this.keyCells = new int[maze.keyCells().cardinality()];
+        i = 0;
+        for (int cell = maze.keyCells().nextSetBit(0); cell >= 0; cell = maze.keyCells().nextSetBit(cell + 1)) {
+            this.keyCells[i++] = cell;
+        }
+    }
+
+    /**
+     * Creates a template of a maze. The maze stays usable, it only shares its terrain with the template.
+     *
+     * @param maze maze that was just loaded and not played yet
+     * @return template of the maze
+     */
+    public static MazeTemplate of(Maze maze) {
+        return new MazeTemplate((MazeClass) maze);
+    }
+
+    /**
+     * Creates a new game instance of the maze. Pacman, ghosts, keys and the target are created again at their
+     * start positions, terrain is shared with the template until it is changed.
+     *
+     * @return new maze
+     */
+    public Maze newGame() {
+        MazeConfigure cfg = new MazeConfigure();
+        cfg.startReading(this);
+        placeObject(cfg, this.targetCell, 'T');
+        placeObject(cfg, this.pacmanCell, 'S');
+        for (int cell : this.ghostCells) {
+            placeObject(cfg, cell, 'G');
+        }
+        for (int cell : this.keyCells) {
+            placeObject(cfg, cell, 'K');
+        }
+        cfg.stopReading();
+        return cfg.createMaze();
+    }
+
+    /**
+     * Places an object to its cell.
+     *
+     * @param cfg       configuration of the new maze
+     * @param cell      cell id, -1 if there is no such object
+     * @param character map character of the object
+     */
+    private void placeObject(MazeConfigure cfg, int cell, char character) {
+        if (cell >= 0) {
+            cfg.processObject(cell / (this.cols + 2), cell % (this.cols + 2), character);
+        }
+    }
+
+    /**
+     * Returns number of rows of the map without the border.
+     *
+     * @return number of rows
+     */
+    int rows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns number of columns of the map without the border.
+     *
+     * @return number of columns
+     */
+    int cols() {
+        return this.cols;
+    }
+
+    /**
+     * Returns terrain of the template.
+     *
+     * @return grid to be shared
+     */
+    TileGrid grid() {
+        return this.grid;
+    }
+
+    /**
+     * Returns wall layer of the template.
+     *
+     * @return board to be shared
+     */
+    BitBoard walls() {
+        return this.walls;
+    }
+
+    /**
+     * Returns point layer of the template.
+     *
+     * @return board to be shared
+     */
+    BitBoard pellets() {
+        return this.pellets;
+    }
+
+    /**
+     * Returns neighbour offsets of the template.
+     *
+     * @return offsets indexed by direction ordinal
+     */
+    int[] offsets() {
+        return this.offsets;
+    }
+}
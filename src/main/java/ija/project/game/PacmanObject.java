@@ -75,8 +75,7 @@ public class PacmanObject extends AbstractObservable implements MazeObject {
      */
     @Override
     public boolean canMove(Field.Direction dir) {
-        Field nextField = field.nextField(dir);
-        return nextField instanceof PathField;
+        return field.getMaze().canMove(field.getCellId(), dir);
     }
 
     /**
@@ -0,0 +1,222 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class keeping recently found paths of a maze, keyed by start and destination cell. When the cache is full the
+ * least recently used path is dropped. Every path remembers the topology version of the maze it was found in and is
+ * dropped when it is read after the topology changed. Hits and misses are counted.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class PathCache {
+    /**
+     * Default maximal number of paths
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Maze of the paths
+     */
+    private final Maze maze;
+    /**
+     * Paths by start and destination in access order
+     */
+    private final LinkedHashMap<Long, Entry> entries;
+    /**
+     * Number of lookups that returned a path
+     */
+    private long hits;
+    /**
+     * Number of lookups that found no path or an outdated one
+     */
+    private long misses;
+
+    /**
+     * Constructor.
+     *
+     * @param maze     maze of the paths
+     * @param capacity maximal number of paths
+     */
+    public PathCache(Maze maze, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.maze = maze;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Constructor with capacity of {@value #DEFAULT_CAPACITY} paths.
+     *
+     * @param maze maze of the paths
+     */
+    public PathCache(Maze maze) {
+        this(maze, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the maze of the paths.
+     *
+     * @return maze
+     */
+    public Maze getMaze() {
+        return this.maze;
+    }
+
+    /**
+     * Returns a cached path.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return new list of directions or null if no path for the current topology is cached
+     */
+    public synchronized List<Field.Direction> get(int from, int to) {
+        Long key = key(from, to);
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        if (entry.version != this.maze.topologyVersion()) {
+            this.entries.remove(key);
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        return new ArrayList<>(Arrays.asList(entry.path));
+    }
+
+    /**
+     * Stores a path found in the current topology.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @param path directions leading from the start to the destination, empty if it is not reachable
+     */
+    public void put(int from, int to, List<Field.Direction> path) {
+        put(from, to, path, this.maze.topologyVersion());
+    }
+
+    /**
+     * Stores a path found in the given topology.
+     *
+     * @param from    cell id of the start
+     * @param to      cell id of the destination
+     * @param path    directions leading from the start to the destination, empty if it is not reachable
+     * @param version topology version of the maze when the search started
+     */
+    private synchronized void put(int from, int to, List<Field.Direction> path, int version) {
+        this.entries.put(key(from, to), new Entry(version, path.toArray(new Field.Direction[0])));
+    }
+
+    /**
+     * Returns a cached path or finds it and stores it.
+     *
+     * @param finder path finder of the maze
+     * @param from   cell id of the start
+     * @param to     cell id of the destination
+     * @return new list of directions, empty if the destination is not reachable
+     */
+    public List<Field.Direction> findPath(PathFinder finder, int from, int to) {
+        List<Field.Direction> path = get(from, to);
+        if (path == null) {
+            // a path found while the topology changes is stored as outdated
+            int version = this.maze.topologyVersion();
+            path = finder.findPath(from, to);
+            put(from, to, path, version);
+        }
+        return path;
+    }
+
+    /**
+     * Removes all paths, counters are kept.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns number of cached paths, including outdated ones that were not read yet.
+     *
+     * @return number of paths
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns number of lookups that returned a path.
+     *
+     * @return number of hits
+     */
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns number of lookups that found no path or an outdated one.
+     *
+     * @return number of misses
+     */
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns state of the cache for logging.
+     *
+     * @return size and counters of the cache
+     */
+    @Override
+    public synchronized String toString() {
+        return "PathCache[size=" + this.entries.size() + ", hits=" + this.hits + ", misses=" + this.misses + "]";
+    }
+
+    /**
+     * Combines start and destination to a map key.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return key
+     */
+    private static Long key(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Cached path with the topology version it was found in.
+     */
+    private static final class Entry {
+        /**
+         * Topology version of the maze
+         */
+        final int version;
+        /**
+         * Directions of the path
+         */
+        final Field.Direction[] path;
+
+        /**
+         * Constructor.
+         *
+         * @param version topology version of the maze
+         * @param path    directions of the path
+         */
+        Entry(int version, Field.Direction[] path) {
+            this.version = version;
+            this.path = path;
+        }
+    }
+}
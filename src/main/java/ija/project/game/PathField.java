@@ -3,10 +3,12 @@ package ija.project.game;
 import ija.project.common.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * Class representing path field. Path field is a field that can be passed through. It can contain objects.
+ * Class representing path field. Path field is a field that can be passed through. It can contain objects, which are
+ * kept in typed slots: pacman, set of ghost ids, a key and the last placed bomb.
  * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
  */
 public class PathField extends AbstractObservable implements Field {
@@ -18,24 +20,38 @@ public class PathField extends AbstractObservable implements Field {
      * Column of the field
      */
     private final int col;
+    /**
+     * Cell id of the field, known once the field is associated with the maze.
+     */
+    private int cell;
     /**
      * Maze to which the field belongs.
      */
     protected Maze maze;
     /**
-     * List of objects on the field.
+     * Empty ghost set shared by fields without ghosts.
+     */
+    private static final long[] NO_GHOSTS = new long[0];
+    /**
+     * Pacman on the field, null if there is none.
+     */
+    private PacmanObject pacman;
+    /**
+     * Ids of ghosts on the field, bit {@code id} is set if the ghost with that id is on the field.
      */
-    protected final List<MazeObject> mazeObjects;
+    private long[] ghostIds;
+    /**
+     * Key on the field, null if there is none.
+     */
+    private KeyObject key;
+    /**
+     * Last bomb placed on the field, null if there is none.
+     */
+    private BombObject bomb;
     /**
      * Indicates whether the field contains a point or not.
      */
-    public boolean point;
-
-    PathField previous;
-
-    public float g;
-    public float h;
-    public float f;
+    protected boolean point;
 
     /**
      * Constructor.
@@ -46,7 +62,7 @@ public class PathField extends AbstractObservable implements Field {
     public PathField(int row, int col) {
         this.row = row;
         this.col = col;
-        this.mazeObjects = new ArrayList<MazeObject>();
+        this.ghostIds = NO_GHOSTS;
         this.maze = null;
         this.point = true;
     }
@@ -58,6 +74,7 @@ public class PathField extends AbstractObservable implements Field {
      */
     public void setMaze(Maze maze) {
         this.maze = maze;
+        this.cell = maze.cellId(this.row, this.col);
     }
 
     /**
@@ -68,12 +85,8 @@ public class PathField extends AbstractObservable implements Field {
      */
     @Override
     public Field nextField(Direction dirs) {
-        return switch (dirs) {
-            case D -> this.maze.getField(this.row + 1, this.col);
-            case L -> this.maze.getField(this.row, this.col - 1);
-            case R -> this.maze.getField(this.row, this.col + 1);
-            case U -> this.maze.getField(this.row - 1, this.col);
-        };
+        int next = this.maze.neighbour(this.cell, dirs);
+        return next < 0 ? null : this.maze.getField(next);
     }
 
     /**
@@ -85,15 +98,35 @@ public class PathField extends AbstractObservable implements Field {
      *                   UnsupportedOperationException is thrown.
      */
     public boolean put(MazeObject object) throws GameException {
-        if (object instanceof PacmanObject) {
-            ((PacmanObject) object).pointCollected = false;
+        if (object instanceof PacmanObject pacmanObject) {
+            pacmanObject.pointCollected = false;
             if (this.point) {
-                ((PacmanObject) object).updateScore();
-                ((PacmanObject) object).pointCollected = true;
-                this.point = false;
+                pacmanObject.updateScore();
+                pacmanObject.pointCollected = true;
+                setPoint(false);
+            }
+            this.pacman = pacmanObject;
+        } else if (object instanceof GhostObject ghost) {
+            int word = ghost.getId() >>> 6;
+            if (word >= this.ghostIds.length) {
+                this.ghostIds = Arrays.copyOf(this.ghostIds, word + 1);
+            }
+            this.ghostIds[word] |= 1L << ghost.getId();
+        } else if (object instanceof KeyObject keyObject) {
+            this.key = keyObject;
+        } else if (object instanceof BombObject bombObject) {
+            this.bomb = bombObject;
+        } else {
+            return false;
+        }
+        if (this.maze instanceof MazeClass mazeClass) {
+            if (object instanceof PacmanObject || object instanceof GhostObject) {
+                mazeClass.occupancyChanged(this.cell, true);
+                mazeClass.objectEntered(object, this.cell);
+            } else if (object instanceof KeyObject keyObject && !keyObject.collected) {
+                mazeClass.keyChanged(this.cell, true);
             }
         }
-        this.mazeObjects.add(object);
         notifyObservers();
         return true;
     }
@@ -104,7 +137,21 @@ public class PathField extends AbstractObservable implements Field {
      * @param object object to be removed from the field.
      */
     public boolean remove(MazeObject object) {
-        this.mazeObjects.remove(object);
+        if (object == this.pacman) {
+            this.pacman = null;
+        } else if (object instanceof GhostObject ghost) {
+            int word = ghost.getId() >>> 6;
+            if (word < this.ghostIds.length) {
+                this.ghostIds[word] &= ~(1L << ghost.getId());
+            }
+        } else if (object == this.key) {
+            this.key = null;
+        } else if (object == this.bomb) {
+            this.bomb = null;
+        }
+        if (this.maze instanceof MazeClass mazeClass && (object instanceof PacmanObject || object instanceof GhostObject)) {
+            mazeClass.occupancyChanged(this.cell, hasMovingObject());
+        }
         notifyObservers();
         return true;
     }
@@ -116,17 +163,85 @@ public class PathField extends AbstractObservable implements Field {
      */
     @Override
     public boolean isEmpty() {
-        return this.mazeObjects.isEmpty();
+        return !hasMovingObject() && this.key == null && this.bomb == null;
     }
 
     /**
-     * Returns the list of objects on the field.
+     * Returns the list of objects on the field. The list is created on every call, typed accessors such as
+     * {@link #getPacman()} or {@link #nextGhost(int)} should be preferred.
      *
-     * @return list of objects on the field
+     * @return list of objects on the field: pacman, ghosts by id, key and bomb
      */
     @Override
     public List<MazeObject> get() {
-        return this.mazeObjects;
+        List<MazeObject> objects = new ArrayList<MazeObject>();
+        if (this.pacman != null) {
+            objects.add(this.pacman);
+        }
+        for (int id = nextGhost(0); id >= 0; id = nextGhost(id + 1)) {
+            objects.add(this.maze.getGhost(id));
+        }
+        if (this.key != null) {
+            objects.add(this.key);
+        }
+        if (this.bomb != null) {
+            objects.add(this.bomb);
+        }
+        return objects;
+    }
+
+    /**
+     * Returns pacman on the field.
+     *
+     * @return pacman or null if pacman is not on the field
+     */
+    public PacmanObject getPacman() {
+        return this.pacman;
+    }
+
+    /**
+     * Checks whether a ghost is on the field.
+     *
+     * @return True if at least one ghost is on the field, false otherwise
+     */
+    public boolean hasGhost() {
+        for (long word : this.ghostIds) {
+            if (word != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns id of the next ghost on the field. Ghosts on the field are iterated by
+     * {@code for (int id = nextGhost(0); id >= 0; id = nextGhost(id + 1))}.
+     *
+     * @param fromId first ghost id to be checked
+     * @return id of the first ghost on the field with id at least {@code fromId}, -1 if there is none
+     */
+    public int nextGhost(int fromId) {
+        int word = fromId >>> 6;
+        if (word >= this.ghostIds.length) {
+            return -1;
+        }
+        long bits = this.ghostIds[word] & (-1L << fromId);
+        while (bits == 0) {
+            if (++word == this.ghostIds.length) {
+                return -1;
+            }
+            bits = this.ghostIds[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Returns the last bomb placed on the field.
+     *
+     * @return bomb or null if there is no bomb on the field
+     */
+    public BombObject getBomb() {
+        return this.bomb;
     }
 
     /**
@@ -169,6 +284,16 @@ public class PathField extends AbstractObservable implements Field {
         return this.col;
     }
 
+    /**
+     * Returns the cell id of the field in its maze.
+     *
+     * @return cell id of the field
+     */
+    @Override
+    public int getCellId() {
+        return this.cell;
+    }
+
     /**
      * Check if the field has point.
      *
@@ -179,20 +304,34 @@ public class PathField extends AbstractObservable implements Field {
         return this.point;
     }
 
+    /**
+     * Sets whether the field contains a point.
+     *
+     * @param point true if the field should contain a point
+     */
+    public void setPoint(boolean point) {
+        this.point = point;
+        if (this.maze instanceof MazeClass mazeClass) {
+            mazeClass.pelletChanged(this.cell, point);
+        }
+    }
+
+    /**
+     * Checks whether pacman or a ghost is on the field.
+     *
+     * @return True if pacman or a ghost is on the field, false otherwise
+     */
+    public boolean hasMovingObject() {
+        return this.pacman != null || hasGhost();
+    }
+
     /**
      * Check if the field has key.
      *
      * @return True if the field has key, false otherwise
      */
     public boolean hasKey() {
-        boolean result = false;
-        for (MazeObject o : mazeObjects) {
-            if (o instanceof KeyObject) {
-                result = true;
-                break;
-            }
-        }
-        return result;
+        return this.key != null;
     }
 
     /**
@@ -201,12 +340,7 @@ public class PathField extends AbstractObservable implements Field {
      * @return KeyObject
      */
     public KeyObject getKey() {
-        for (MazeObject o : mazeObjects) {
-            if (o instanceof KeyObject) {
-                return (KeyObject) o;
-            }
-        }
-        return null;
+        return this.key;
     }
 
     /**
@@ -236,35 +370,4 @@ public class PathField extends AbstractObservable implements Field {
             }
         }
     }
-
-    /**
-     * Sets a total cost of the field. Used for A* algorithm.
-     * @param f total cost of the field
-     */
-    public void setF(float f){
-        this.f = f;
-    }
-    /**
-     * Returns a total cost of the field. Used for A* algorithm.
-     * @return total cost of the field
-     */
-    public float getF(){
-        return f;
-    }
-
-    /**
-     * Sets a previous field.
-     * @param previous previous field
-     */
-    public void setPrevious(PathField previous) {
-        this.previous = previous;
-    }
-
-    /**
-     * Returns a previous field.
-     * @return previous field
-     */
-    public PathField getPrevious() {
-        return previous;
-    }
 }
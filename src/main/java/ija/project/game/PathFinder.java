@@ -0,0 +1,629 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class finding shortest paths in the maze by A* search. Every move costs 1 and the Manhattan distance is used as
+ * the heuristic, so found paths are shortest. The path finder itself keeps no search state, every search runs in a
+ * {@link SearchContext}, by default in the context of the calling thread, so several threads can search at once.
+ * If a current {@link DistanceTable} of the maze is set, paths are read from it without searching.
+ * <p>
+ * In open areas plain A* expands many cells of equally long paths. {@link Mode#JUMP_POINT} uses Jump Point Search
+ * for 4-connected grids instead: the search moves in straight lines and stops only at cells with a forced neighbour,
+ * so rooms are crossed without expanding their inside. Mazes made of corridors are searched by a
+ * {@link JunctionGraph} in {@link Mode#JUNCTION_GRAPH}. {@link Mode#AUTO} chooses one of these modes from the shape
+ * of the maze, all of them find shortest paths. Very large mazes can be searched by a {@link HierarchicalPathFinder}
+ * in {@link Mode#HIERARCHICAL}, which is faster but may return paths slightly longer than the shortest ones, so it
+ * is only used when it is set explicitly, as {@link GameEngine#setApproximatePaths} does.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class PathFinder {
+    /**
+     * Search algorithm of the path finder.
+     */
+    public enum Mode {
+        /**
+         * A* expanding every cell
+         */
+        ASTAR,
+        /**
+         * Jump Point Search
+         */
+        JUMP_POINT,
+        /**
+         * Hierarchical search on clusters of the maze, paths may be slightly longer than the shortest ones
+         */
+        HIERARCHICAL,
+        /**
+         * A* search on the graph of junctions, corridors are crossed in one step
+         */
+        JUNCTION_GRAPH,
+        /**
+         * Jump Point Search if at least {@value #OPEN_AREA_THRESHOLD} of passable cells are open, the junction graph
+         * if at least {@value #CORRIDOR_THRESHOLD} of passable cells are corridors, A* otherwise, never the
+         * hierarchical search
+         */
+        AUTO
+    }
+
+    /**
+     * Minimal ratio of open cells, passable cells with all four neighbours passable, for which {@link Mode#AUTO}
+     * uses Jump Point Search
+     */
+    public static final double OPEN_AREA_THRESHOLD = 0.5;
+    /**
+     * Minimal ratio of corridor cells, passable cells with exactly two exits, for which {@link Mode#AUTO} uses the
+     * junction graph
+     */
+    public static final double CORRIDOR_THRESHOLD = 0.6;
+    /**
+     * All directions, cached so that the search does not allocate
+     */
+    private static final Field.Direction[] DIRECTIONS = Field.Direction.values();
+
+    /**
+     * Maze in which paths are searched
+     */
+    private final Maze maze;
+    /**
+     * Number of columns of the maze
+     */
+    private final int cols;
+    /**
+     * Distance table of the maze, null if there is none
+     */
+    private volatile DistanceTable table;
+    /**
+     * Search algorithm used when there is no current distance table
+     */
+    private volatile Mode mode = Mode.AUTO;
+    /**
+     * Passability snapshot of the maze used by Jump Point Search, null if it was not taken yet
+     */
+    private volatile Terrain terrain;
+    /**
+     * Hierarchical path finder of the maze, created on the first hierarchical search
+     */
+    private HierarchicalPathFinder hierarchy;
+    /**
+     * Junction graph of the maze, created on the first use
+     */
+    private JunctionGraph junctions;
+
+    /**
+     * Constructor.
+     *
+     * @param maze maze in which paths are searched
+     */
+    public PathFinder(Maze maze) {
+        this.maze = maze;
+        this.cols = maze.numCols();
+    }
+
+    /**
+     * Returns the maze of the path finder.
+     *
+     * @return maze in which paths are searched
+     */
+    public Maze getMaze() {
+        return this.maze;
+    }
+
+    /**
+     * Sets distance table used while it describes the current topology of the maze.
+     *
+     * @param table distance table of the maze or null
+     */
+    public void setDistanceTable(DistanceTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Returns distance table of the path finder.
+     *
+     * @return distance table or null if there is none
+     */
+    public DistanceTable getDistanceTable() {
+        return this.table;
+    }
+
+    /**
+     * Sets the search algorithm.
+     *
+     * @param mode search algorithm
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the search algorithm.
+     *
+     * @return search algorithm, may be {@link Mode#AUTO}
+     */
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * Returns ratio of open cells of the maze, passable cells whose four neighbours are passable too. Measured once
+     * per topology version.
+     *
+     * @return ratio between 0 and 1
+     */
+    public double openArea() {
+        return terrain().openArea;
+    }
+
+    /**
+     * Returns ratio of corridor cells of the maze, passable cells with exactly two exits. Measured once per topology
+     * version.
+     *
+     * @return ratio between 0 and 1
+     */
+    public double corridors() {
+        return terrain().corridors;
+    }
+
+    /**
+     * Returns the junction graph of the maze, it is built on the first call and kept up to date with the maze.
+     *
+     * @return junction graph
+     */
+    public synchronized JunctionGraph getJunctionGraph() {
+        if (this.junctions == null) {
+            this.junctions = new JunctionGraph(this.maze);
+        }
+        return this.junctions;
+    }
+
+    /**
+     * Returns passability snapshot of the current topology, taken again after the topology changes.
+     *
+     * @return snapshot of the maze
+     */
+    private Terrain terrain() {
+        Terrain terrain = this.terrain;
+        int version = this.maze.topologyVersion();
+        if (terrain == null || terrain.version != version) {
+            terrain = new Terrain(this.maze, version);
+            this.terrain = terrain;
+        }
+        return terrain;
+    }
+
+    /**
+     * Returns the hierarchical path finder of the maze, it is built on the first call.
+     *
+     * @return hierarchical path finder
+     */
+    private synchronized HierarchicalPathFinder hierarchy() {
+        if (this.hierarchy == null) {
+            this.hierarchy = new HierarchicalPathFinder(this.maze);
+        }
+        return this.hierarchy;
+    }
+
+    /**
+     * Checks whether hierarchical search should be used.
+     *
+     * @return true only for {@link Mode#HIERARCHICAL}, its paths may not be shortest
+     */
+    private boolean useHierarchy() {
+        return this.mode == Mode.HIERARCHICAL;
+    }
+
+    /**
+     * Checks whether Jump Point Search should be used.
+     *
+     * @return true for {@link Mode#JUMP_POINT} and for {@link Mode#AUTO} on open mazes, false otherwise
+     */
+    private boolean useJumpPoints() {
+        Mode mode = this.mode;
+        return mode == Mode.JUMP_POINT || (mode == Mode.AUTO && openArea() >= OPEN_AREA_THRESHOLD);
+    }
+
+    /**
+     * Checks whether the junction graph should be used.
+     *
+     * @return true for {@link Mode#JUNCTION_GRAPH} and for {@link Mode#AUTO} on mazes of corridors, false otherwise
+     */
+    private boolean useJunctions() {
+        Mode mode = this.mode;
+        return mode == Mode.JUNCTION_GRAPH || (mode == Mode.AUTO && corridors() >= CORRIDOR_THRESHOLD);
+    }
+
+    /**
+     * Finds the shortest path between two fields, in {@link Mode#HIERARCHICAL} a path that may be slightly
+     * longer.
+     *
+     * @param from start field
+     * @param to   destination field
+     * @return directions leading from the start to the destination, empty if the destination is not reachable
+     */
+    public List<Field.Direction> findPath(Field from, Field to) {
+        return findPath(SearchContext.current(), from.getCellId(), to.getCellId());
+    }
+
+    /**
+     * Finds the shortest path between two cells, in {@link Mode#HIERARCHICAL} a path that may be slightly
+     * longer.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return directions leading from the start to the destination, empty if the destination is not reachable
+     */
+    public List<Field.Direction> findPath(int from, int to) {
+        return findPath(SearchContext.current(), from, to);
+    }
+
+    /**
+     * Finds the shortest path between two cells using the given search context, in {@link Mode#HIERARCHICAL} a
+     * path that may be slightly longer.
+     *
+     * @param ctx  search context not used by other threads
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return directions leading from the start to the destination, empty if the destination is not reachable
+     */
+    public List<Field.Direction> findPath(SearchContext ctx, int from, int to) {
+        DistanceTable table = this.table;
+        if (table != null && table.isCurrent()) {
+            List<Field.Direction> path = new ArrayList<>();
+            for (Field.Direction dir = table.nextStep(from, to); dir != null; dir = table.nextStep(from, to)) {
+                path.add(dir);
+                from = this.maze.neighbour(from, dir);
+            }
+            return path;
+        }
+        if (useHierarchy()) {
+            return hierarchy().findPath(ctx, from, to);
+        }
+        if (useJumpPoints()) {
+            return jumpSearch(ctx, from, to) ? jumpPath(ctx, from, to) : new ArrayList<>();
+        }
+        if (useJunctions()) {
+            return getJunctionGraph().findPath(ctx, from, to);
+        }
+        if (!search(ctx, from, to)) {
+            return new ArrayList<>();
+        }
+        Field.Direction[] path = new Field.Direction[ctx.g[to]];
+        int cell = to;
+        for (int i = path.length - 1; i >= 0; i--) {
+            Field.Direction dir = DIRECTIONS[ctx.parent[cell]];
+            path[i] = dir;
+            cell = this.maze.neighbour(cell, dir.opposite(dir));
+        }
+        return new ArrayList<>(Arrays.asList(path));
+    }
+
+    /**
+     * Returns length of the shortest path between two cells, in {@link Mode#HIERARCHICAL} length of a path that
+     * may be slightly longer.
+     *
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return number of moves or -1 if the destination is not reachable
+     */
+    public int distance(int from, int to) {
+        DistanceTable table = this.table;
+        if (table != null && table.isCurrent()) {
+            return table.distance(from, to);
+        }
+        if (useHierarchy()) {
+            return hierarchy().distance(from, to);
+        }
+        if (!useJumpPoints() && useJunctions()) {
+            return getJunctionGraph().distance(from, to);
+        }
+        SearchContext ctx = SearchContext.current();
+        boolean found = useJumpPoints() ? jumpSearch(ctx, from, to) : search(ctx, from, to);
+        return found ? ctx.g[to] : -1;
+    }
+
+    /**
+     * Runs A* search from the start until the destination is closed.
+     *
+     * @param ctx  search context
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return true if the destination was reached, false otherwise
+     */
+    private boolean search(SearchContext ctx, int from, int to) {
+        ctx.begin(this.maze.numCells());
+        if (!this.maze.isPassable(from) || !this.maze.isPassable(to)) {
+            return false;
+        }
+        int[] g = ctx.g;
+        int[] stamp = ctx.stamp;
+        int toRow = to / this.cols;
+        int toCol = to % this.cols;
+        g[from] = 0;
+        stamp[from] = ctx.open;
+        ctx.push(from, key(0, from, toRow, toCol));
+        while (!ctx.isEmpty()) {
+            int cell = ctx.pop();
+            stamp[cell] = ctx.closed;
+            ctx.expanded++;
+            if (cell == to) {
+                return true;
+            }
+            int exits = this.maze.exits(cell);
+            int cost = g[cell] + 1;
+            for (Field.Direction dir : DIRECTIONS) {
+                if ((exits & (1 << dir.ordinal())) == 0) {
+                    continue;
+                }
+                int next = this.maze.neighbour(cell, dir);
+                int state = stamp[next];
+                if (state == ctx.closed || (state == ctx.open && g[next] <= cost)) {
+                    continue;
+                }
+                g[next] = cost;
+                ctx.parent[next] = (byte) dir.ordinal();
+                long key = key(cost, next, toRow, toCol);
+                if (state == ctx.open) {
+                    ctx.decrease(next, key);
+                } else {
+                    stamp[next] = ctx.open;
+                    ctx.push(next, key);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs Jump Point Search from the start until the destination is closed. Only jump points are put to the heap,
+     * every jump point remembers the jump point it was reached from.
+     *
+     * @param ctx  search context
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return true if the destination was reached, false otherwise
+     */
+    private boolean jumpSearch(SearchContext ctx, int from, int to) {
+        ctx.begin(this.maze.numCells());
+        if (!this.maze.isPassable(from) || !this.maze.isPassable(to)) {
+            return false;
+        }
+        int[] g = ctx.g;
+        int[] stamp = ctx.stamp;
+        int[] links = ctx.links();
+        boolean[] passable = terrain().passable;
+        int toRow = to / this.cols;
+        int toCol = to % this.cols;
+        g[from] = 0;
+        links[from] = from;
+        stamp[from] = ctx.open;
+        ctx.push(from, key(0, from, toRow, toCol));
+        while (!ctx.isEmpty()) {
+            int cell = ctx.pop();
+            stamp[cell] = ctx.closed;
+            ctx.expanded++;
+            if (cell == to) {
+                return true;
+            }
+            int parent = links[cell];
+            for (Field.Direction dir : DIRECTIONS) {
+                int step = this.offsets(dir);
+                if (parent != cell && pruned(cell, parent, step)) {
+                    continue;
+                }
+                int next = step == 1 || step == -1 ? jumpHorizontal(passable, cell + step, step, to)
+                        : jumpVertical(passable, cell + step, step, to);
+                if (next < 0 || stamp[next] == ctx.closed) {
+                    continue;
+                }
+                int cost = g[cell] + Math.abs(next - cell) / Math.abs(step);
+                if (stamp[next] == ctx.open && g[next] <= cost) {
+                    continue;
+                }
+                g[next] = cost;
+                links[next] = cell;
+                long key = key(cost, next, toRow, toCol);
+                if (stamp[next] == ctx.open) {
+                    ctx.decrease(next, key);
+                } else {
+                    stamp[next] = ctx.open;
+                    ctx.push(next, key);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a direction is pruned for a jump point reached from its parent. Only the direction of travel
+     * and the two perpendicular directions are followed, never the way back.
+     *
+     * @param cell   cell id of the jump point
+     * @param parent cell id of its parent
+     * @param step   cell id offset of the direction
+     * @return true if the direction is not followed, false otherwise
+     */
+    private boolean pruned(int cell, int parent, int step) {
+        int travel = cell - parent;
+        boolean horizontal = cell / this.cols == parent / this.cols;
+        int back = horizontal ? (travel > 0 ? -1 : 1) : (travel > 0 ? -this.cols : this.cols);
+        return step == back;
+    }
+
+    /**
+     * Jumps horizontally from a cell until a jump point is found.
+     *
+     * @param passable passability of every cell
+     * @param cell     first cell of the jump
+     * @param dx       1 for moving right, -1 for moving left
+     * @param goal     cell id of the destination
+     * @return cell id of the jump point or -1 if a wall is hit first
+     */
+    private int jumpHorizontal(boolean[] passable, int cell, int dx, int goal) {
+        while (walkable(passable, cell)) {
+            if (cell == goal) {
+                return cell;
+            }
+            if ((walkable(passable, cell - this.cols) && !walkable(passable, cell - dx - this.cols))
+                    || (walkable(passable, cell + this.cols) && !walkable(passable, cell - dx + this.cols))) {
+                return cell;
+            }
+            cell += dx;
+        }
+        return -1;
+    }
+
+    /**
+     * Jumps vertically from a cell until a jump point is found. A cell from which a horizontal jump finds a jump
+     * point is a jump point too.
+     *
+     * @param passable passability of every cell
+     * @param cell     first cell of the jump
+     * @param dy       number of columns for moving down, minus number of columns for moving up
+     * @param goal     cell id of the destination
+     * @return cell id of the jump point or -1 if a wall is hit first
+     */
+    private int jumpVertical(boolean[] passable, int cell, int dy, int goal) {
+        while (walkable(passable, cell)) {
+            if (cell == goal) {
+                return cell;
+            }
+            if ((walkable(passable, cell - 1) && !walkable(passable, cell - 1 - dy))
+                    || (walkable(passable, cell + 1) && !walkable(passable, cell + 1 - dy))) {
+                return cell;
+            }
+            if (jumpHorizontal(passable, cell + 1, 1, goal) >= 0 || jumpHorizontal(passable, cell - 1, -1, goal) >= 0) {
+                return cell;
+            }
+            cell += dy;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether a cell exists and is passable. Passable cells never lie on the border of the maze, so moving
+     * by one column from a passable cell never wraps to another row.
+     *
+     * @param passable passability of every cell
+     * @param cell     cell id, may be outside the maze
+     * @return true if the cell is passable, false otherwise
+     */
+    private static boolean walkable(boolean[] passable, int cell) {
+        return cell >= 0 && cell < passable.length && passable[cell];
+    }
+
+    /**
+     * Returns cell id offset of a direction.
+     *
+     * @param dir direction
+     * @return difference between cell ids of a cell and its neighbour in the direction
+     */
+    private int offsets(Field.Direction dir) {
+        return switch (dir) {
+            case D -> this.cols;
+            case L -> -1;
+            case R -> 1;
+            case U -> -this.cols;
+        };
+    }
+
+    /**
+     * Builds the path found by {@link #jumpSearch} by expanding straight segments between jump points.
+     *
+     * @param ctx  search context of the finished search
+     * @param from cell id of the start
+     * @param to   cell id of the destination
+     * @return directions leading from the start to the destination
+     */
+    private List<Field.Direction> jumpPath(SearchContext ctx, int from, int to) {
+        int[] links = ctx.links();
+        Field.Direction[] path = new Field.Direction[ctx.g[to]];
+        int i = path.length;
+        for (int cell = to; cell != from; cell = links[cell]) {
+            int parent = links[cell];
+            Field.Direction dir;
+            int length;
+            if (cell / this.cols == parent / this.cols) {
+                dir = cell > parent ? Field.Direction.R : Field.Direction.L;
+                length = Math.abs(cell - parent);
+            } else {
+                dir = cell > parent ? Field.Direction.D : Field.Direction.U;
+                length = Math.abs(cell - parent) / this.cols;
+            }
+            for (int k = 0; k < length; k++) {
+                path[--i] = dir;
+            }
+        }
+        return new ArrayList<>(Arrays.asList(path));
+    }
+
+    /**
+     * Computes heap priority of a cell. Lower estimated total cost goes first, on equal estimates the cell farther
+     * from the start, which is closer to the destination, goes first.
+     *
+     * @param cost  cost from the start
+     * @param cell  cell id
+     * @param toRow row of the destination
+     * @param toCol column of the destination
+     * @return priority, lower is better
+     */
+    private long key(int cost, int cell, int toRow, int toCol) {
+        int row = cell / this.cols;
+        int h = Math.abs(row - toRow) + Math.abs(cell - row * this.cols - toCol);
+        return ((long) (cost + h) << 32) | (Integer.MAX_VALUE - cost);
+    }
+
+    /**
+     * Passability of every cell and ratios of open and corridor cells for one topology version of a maze.
+     */
+    private static final class Terrain {
+        /**
+         * Topology version of the snapshot
+         */
+        final int version;
+        /**
+         * Passability of every cell
+         */
+        final boolean[] passable;
+        /**
+         * Ratio of passable cells whose four neighbours are passable too
+         */
+        final double openArea;
+        /**
+         * Ratio of passable cells with exactly two exits
+         */
+        final double corridors;
+
+        /**
+         * Takes a snapshot of the maze.
+         *
+         * @param maze    maze
+         * @param version current topology version of the maze
+         */
+        Terrain(Maze maze, int version) {
+            this.version = version;
+            this.passable = new boolean[maze.numCells()];
+            int count = 0;
+            int open = 0;
+            int corridors = 0;
+            for (int cell = 0; cell < this.passable.length; cell++) {
+                if (maze.isPassable(cell)) {
+                    this.passable[cell] = true;
+                    count++;
+                    if (maze.exits(cell) == (1 << DIRECTIONS.length) - 1) {
+                        open++;
+                    } else if (Integer.bitCount(maze.exits(cell)) == 2) {
+                        corridors++;
+                    }
+                }
+            }
+            this.openArea = count == 0 ? 0 : (double) open / count;
+            this.corridors = count == 0 ? 0 : (double) corridors / count;
+        }
+    }
+}
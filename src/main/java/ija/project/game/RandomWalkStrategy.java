@@ -0,0 +1,69 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+
+/**
+ * Ghost strategy wandering through the maze. The ghost keeps its direction and turns randomly with a given chance or
+ * when it cannot continue. By default it wanders even when eatable, like ghosts always did.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public class RandomWalkStrategy extends AbstractGhostStrategy {
+    /**
+     * Default chance of turning when the ghost could continue
+     */
+    public static final double DEFAULT_TURN_CHANCE = 0.3;
+
+    /**
+     * Chance of turning when the ghost could continue
+     */
+    private final double turnChance;
+
+    /**
+     * Constructor.
+     *
+     * @param turnChance chance of turning when the ghost could continue, between 0 and 1
+     * @param flees      whether eatable ghosts run away from pacman
+     */
+    public RandomWalkStrategy(double turnChance, boolean flees) {
+        super(flees);
+        if (turnChance < 0 || turnChance > 1) {
+            throw new IllegalArgumentException("Turn chance must be between 0 and 1");
+        }
+        this.turnChance = turnChance;
+    }
+
+    /**
+     * Constructor of a ghost that does not flee.
+     *
+     * @param turnChance chance of turning when the ghost could continue, between 0 and 1
+     */
+    public RandomWalkStrategy(double turnChance) {
+        this(turnChance, false);
+    }
+
+    /**
+     * Constructor with turn chance of {@value #DEFAULT_TURN_CHANCE} of a ghost that does not flee.
+     */
+    public RandomWalkStrategy() {
+        this(DEFAULT_TURN_CHANCE);
+    }
+
+    /**
+     * Continues in the current direction or turns randomly.
+     *
+     * @param ghosts    population of the ghosts
+     * @param id        ID of the ghost to move
+     * @param situation state of the game shared by all ghosts in the current tick
+     * @param cell      cell id of the ghost
+     * @param options   bitmask of possible moves
+     * @return direction of the next move
+     */
+    @Override
+    protected Field.Direction decide(GhostPopulation ghosts, int id, Situation situation, int cell, int options) {
+        Field.Direction dir = ghosts.direction(id);
+        if (isOption(dir, options) && ghosts.random(id).nextDouble() >= this.turnChance) {
+            return dir;
+        }
+        return randomOption(ghosts.random(id), options);
+    }
+}
@@ -0,0 +1,224 @@
+package ija.project.game;
+
+import java.util.Arrays;
+
+/**
+ * Class holding the state of one path search: cost, parent direction and open or closed state of every cell and
+ * the heap of open cells. Arrays are indexed by cell id and reused by following searches, a generation stamp tells
+ * which entries belong to the current search. A context must be used by one thread at a time, {@link #current()}
+ * returns a context owned by the calling thread.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public final class SearchContext {
+    /**
+     * Context of every thread, grown when the thread searches a larger maze
+     */
+    private static final ThreadLocal<SearchContext> POOL = ThreadLocal.withInitial(SearchContext::new);
+
+    /**
+     * Cost of the best known path from the start to every cell
+     */
+    int[] g = new int[0];
+    /**
+     * Ordinal of the direction in which every cell was entered on the best known path
+     */
+    byte[] parent = new byte[0];
+    /**
+     * Cell from which every cell was reached on the best known path, allocated only by searches that need it
+     */
+    private int[] link = new int[0];
+    /**
+     * Generation stamp of every cell, {@link #open} if the cell is open and {@link #closed} if it is closed in the
+     * current search, entries of cells with older stamps are not valid
+     */
+    int[] stamp = new int[0];
+    /**
+     * Position of every open cell in the heap
+     */
+    private int[] heapIndex = new int[0];
+    /**
+     * Binary heap of open cells ordered by {@link #heapKey}
+     */
+    private int[] heap = new int[64];
+    /**
+     * Priority of the cells in the heap
+     */
+    private long[] heapKey = new long[64];
+    /**
+     * Number of cells in the heap
+     */
+    private int heapSize;
+    /**
+     * Generation of the current search
+     */
+    private int generation;
+    /**
+     * Stamp of open cells in the current search
+     */
+    int open;
+    /**
+     * Stamp of closed cells in the current search
+     */
+    int closed;
+    /**
+     * Number of cells closed by the current search
+     */
+    int expanded;
+
+    /**
+     * Returns the context of the calling thread.
+     *
+     * @return context that is not used by other threads
+     */
+    public static SearchContext current() {
+        return POOL.get();
+    }
+
+    /**
+     * Returns number of cells closed by the last search.
+     *
+     * @return number of expanded cells
+     */
+    public int expanded() {
+        return this.expanded;
+    }
+
+    /**
+     * Prepares the context for a new search in a maze with the given number of cells. Arrays are grown if needed,
+     * otherwise only the generation is changed.
+     *
+     * @param cells number of cells of the maze
+     */
+    void begin(int cells) {
+        if (this.stamp.length < cells) {
+            this.g = new int[cells];
+            this.parent = new byte[cells];
+            this.stamp = new int[cells];
+            this.heapIndex = new int[cells];
+            this.generation = 0;
+        } else if (this.generation == (Integer.MAX_VALUE >> 1)) {
+            Arrays.fill(this.stamp, 0);
+            this.generation = 0;
+        }
+        this.generation++;
+        this.open = this.generation << 1;
+        this.closed = this.open | 1;
+        this.heapSize = 0;
+        this.expanded = 0;
+    }
+
+    /**
+     * Returns array of cells from which every cell was reached, allocated on the first use.
+     *
+     * @return array indexed by cell id, valid for cells with a current stamp
+     */
+    int[] links() {
+        if (this.link.length < this.stamp.length) {
+            this.link = new int[this.stamp.length];
+        }
+        return this.link;
+    }
+
+    /**
+     * Checks whether the heap contains a cell.
+     *
+     * @return true if the heap is empty, false otherwise
+     */
+    boolean isEmpty() {
+        return this.heapSize == 0;
+    }
+
+    /**
+     * Adds a cell to the heap.
+     *
+     * @param cell cell id
+     * @param key  priority of the cell, lower goes first
+     */
+    void push(int cell, long key) {
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, this.heapSize * 2);
+            this.heapKey = Arrays.copyOf(this.heapKey, this.heapSize * 2);
+        }
+        siftUp(this.heapSize++, cell, key);
+    }
+
+    /**
+     * Removes the cell with the lowest priority from the heap.
+     *
+     * @return cell id
+     */
+    int pop() {
+        int top = this.heap[0];
+        int last = this.heap[--this.heapSize];
+        long lastKey = this.heapKey[this.heapSize];
+        if (this.heapSize > 0) {
+            siftDown(0, last, lastKey);
+        }
+        return top;
+    }
+
+    /**
+     * Lowers priority of a cell that is already in the heap.
+     *
+     * @param cell cell id
+     * @param key  new priority of the cell
+     */
+    void decrease(int cell, long key) {
+        siftUp(this.heapIndex[cell], cell, key);
+    }
+
+    /**
+     * Moves a cell from the given position towards the root until the heap order holds.
+     *
+     * @param index position of the hole where the cell should be placed
+     * @param cell  cell id
+     * @param key   priority of the cell
+     */
+    private void siftUp(int index, int cell, long key) {
+        while (index > 0) {
+            int up = (index - 1) >>> 1;
+            if (this.heapKey[up] <= key) {
+                break;
+            }
+            place(index, this.heap[up], this.heapKey[up]);
+            index = up;
+        }
+        place(index, cell, key);
+    }
+
+    /**
+     * Moves a cell from the given position towards the leaves until the heap order holds.
+     *
+     * @param index position of the hole where the cell should be placed
+     * @param cell  cell id
+     * @param key   priority of the cell
+     */
+    private void siftDown(int index, int cell, long key) {
+        int half = this.heapSize >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            if (child + 1 < this.heapSize && this.heapKey[child + 1] < this.heapKey[child]) {
+                child++;
+            }
+            if (key <= this.heapKey[child]) {
+                break;
+            }
+            place(index, this.heap[child], this.heapKey[child]);
+            index = child;
+        }
+        place(index, cell, key);
+    }
+
+    /**
+     * Stores a cell to a position of the heap.
+     *
+     * @param index position in the heap
+     * @param cell  cell id
+     * @param key   priority of the cell
+     */
+    private void place(int index, int cell, long key) {
+        this.heap[index] = cell;
+        this.heapKey[index] = key;
+        this.heapIndex[cell] = index;
+    }
+}
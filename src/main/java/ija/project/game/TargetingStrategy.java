@@ -0,0 +1,149 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+
+/**
+ * Ghost strategy of the classic arcade personalities. Every personality computes a target tile from the position of
+ * pacman and on every decision the ghost takes the move whose next cell is closest to the target in a straight line,
+ * walls between are ignored. Eatable ghosts flee unless the strategy is created without fleeing.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+public class TargetingStrategy extends AbstractGhostStrategy {
+    /**
+     * Number of cells in front of pacman targeted by {@link Personality#AMBUSHER}
+     */
+    public static final int AMBUSH_DISTANCE = 4;
+    /**
+     * Number of cells in front of pacman used as the pivot of {@link Personality#FLANKER}
+     */
+    public static final int FLANK_DISTANCE = 2;
+    /**
+     * Distance from pacman under which {@link Personality#SHY} retreats to its corner
+     */
+    public static final int SHY_DISTANCE = 8;
+    /**
+     * Row offsets of directions, indexed by ordinal
+     */
+    private static final int[] DELTA_ROW = {1, 0, 0, -1};
+    /**
+     * Column offsets of directions, indexed by ordinal
+     */
+    private static final int[] DELTA_COL = {0, -1, 1, 0};
+
+    /**
+     * Personality of a ghost, it defines the target tile.
+     */
+    public enum Personality {
+        /**
+         * Targets pacman itself
+         */
+        CHASER,
+        /**
+         * Targets cells in front of pacman
+         */
+        AMBUSHER,
+        /**
+         * Targets the cell mirroring the first ghost around the cells in front of pacman
+         */
+        FLANKER,
+        /**
+         * Targets pacman when far from it, otherwise retreats to the bottom left corner
+         */
+        SHY
+    }
+
+    /**
+     * Personality of the ghost
+     */
+    private final Personality personality;
+
+    /**
+     * Constructor.
+     *
+     * @param personality personality of the ghost
+     * @param flees       whether eatable ghosts run away from pacman
+     */
+    public TargetingStrategy(Personality personality, boolean flees) {
+        super(flees);
+        this.personality = personality;
+    }
+
+    /**
+     * Constructor of a fleeing ghost.
+     *
+     * @param personality personality of the ghost
+     */
+    public TargetingStrategy(Personality personality) {
+        this(personality, true);
+    }
+
+    /**
+     * Returns the personality of the ghost.
+     *
+     * @return personality
+     */
+    public Personality getPersonality() {
+        return this.personality;
+    }
+
+    /**
+     * Takes the move closest to the target tile, ties are resolved by order of directions.
+     *
+     * @param ghosts    population of the ghosts
+     * @param id        ID of the ghost to move
+     * @param situation state of the game shared by all ghosts in the current tick
+     * @param cell      cell id of the ghost
+     * @param options   bitmask of possible moves
+     * @return direction of the next move
+     */
+    @Override
+    protected Field.Direction decide(GhostPopulation ghosts, int id, Situation situation, int cell, int options) {
+        Maze maze = situation.getMaze();
+        int pacman = situation.pacmanCell();
+        int targetRow = maze.cellRow(pacman);
+        int targetCol = maze.cellCol(pacman);
+        int ahead = situation.pacmanDirection() == null ? -1 : situation.pacmanDirection().ordinal();
+        switch (this.personality) {
+            case AMBUSHER -> {
+                if (ahead >= 0) {
+                    targetRow += AMBUSH_DISTANCE * DELTA_ROW[ahead];
+                    targetCol += AMBUSH_DISTANCE * DELTA_COL[ahead];
+                }
+            }
+            case FLANKER -> {
+                if (ahead >= 0) {
+                    targetRow += FLANK_DISTANCE * DELTA_ROW[ahead];
+                    targetCol += FLANK_DISTANCE * DELTA_COL[ahead];
+                }
+                targetRow = 2 * targetRow - maze.cellRow(situation.leaderCell());
+                targetCol = 2 * targetCol - maze.cellCol(situation.leaderCell());
+            }
+            case SHY -> {
+                int dr = maze.cellRow(cell) - targetRow;
+                int dc = maze.cellCol(cell) - targetCol;
+                if (dr * dr + dc * dc < SHY_DISTANCE * SHY_DISTANCE) {
+                    targetRow = maze.numRows() - 1;
+                    targetCol = 0;
+                }
+            }
+            default -> {
+            }
+        }
+        int row = maze.cellRow(cell);
+        int col = maze.cellCol(cell);
+        int best = Integer.numberOfTrailingZeros(options);
+        long bestDistance = Long.MAX_VALUE;
+        for (int rest = options; rest != 0; rest &= rest - 1) {
+            int o = Integer.numberOfTrailingZeros(rest);
+            long dr = row + DELTA_ROW[o] - targetRow;
+            long dc = col + DELTA_COL[o] - targetCol;
+            long distance = dr * dr + dc * dc;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = o;
+            }
+        }
+        return DIRECTIONS[best];
+    }
+}
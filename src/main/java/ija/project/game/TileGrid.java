@@ -0,0 +1,288 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+
+import java.util.Arrays;
+
+/**
+ * Packed storage of the maze board. Cells are identified by cell id ({@code row * cols + col}) and stored in
+ * square chunks of {@value #CHUNK_SIZE}x{@value #CHUNK_SIZE} cells. A chunk keeps terrain and passable-direction
+ * bits of its cells. Chunks that contain only walls share one read-only flyweight and are materialised on the
+ * first write, {@link Field} objects are created only when somebody asks for them. Chunks can be shared by several
+ * grids created by {@link #share()}, a shared chunk is copied by the grid that writes to it first.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+final class TileGrid {
+    /**
+     * Terrain code of a wall cell. Default value of every cell.
+     */
+    static final byte WALL = 0;
+    /**
+     * Terrain code of a path cell.
+     */
+    static final byte PATH = 1;
+    /**
+     * Terrain code of a target cell.
+     */
+    static final byte TARGET = 2;
+    /**
+     * Binary logarithm of the chunk side
+     */
+    static final int CHUNK_SHIFT = 6;
+    /**
+     * Number of cells on one side of a chunk
+     */
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    /**
+     * Mask of the position inside a chunk
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /**
+     * Chunk shared by all parts of the grid that contain only walls
+     */
+    private static final Chunk WALL_CHUNK = new Chunk();
+
+    /**
+     * Chunk of terrain. Cells are stored row by row inside the chunk.
+     */
+    private static final class Chunk {
+        /**
+         * Terrain code of every cell of the chunk
+         */
+        final byte[] terrain;
+        /**
+         * Bitmask of passable neighbours of every cell, bit {@code 1 << Direction.ordinal()} is set if the
+         * neighbour in that direction can be entered
+         */
+        final byte[] exits;
+
+        /**
+         * Constructor. All cells are walls without exits.
+         */
+        Chunk() {
+            this.terrain = new byte[CHUNK_SIZE * CHUNK_SIZE];
+            this.exits = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        }
+
+        /**
+         * Copy constructor.
+         *
+         * @param other chunk to be copied
+         */
+        Chunk(Chunk other) {
+            this.terrain = other.terrain.clone();
+            this.exits = other.exits.clone();
+        }
+    }
+
+    /**
+     * Number of rows of the grid
+     */
+    private final int rows;
+    /**
+     * Number of columns of the grid
+     */
+    private final int cols;
+    /**
+     * Number of chunks in one row of chunks
+     */
+    private final int chunkCols;
+    /**
+     * Chunks of the grid, row by row
+     */
+    private final Chunk[] chunks;
+    /**
+     * Chunks that belong only to this grid and can be written in place
+     */
+    private final boolean[] owned;
+    /**
+     * Already materialized fields per chunk, null if no field of the chunk was requested yet
+     */
+    private final Field[][] fields;
+
+    /**
+     * Constructor. All cells are walls and no chunk is allocated.
+     *
+     * @param rows number of rows of the grid
+     * @param cols number of columns of the grid
+     */
+    TileGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.chunkCols = (cols + CHUNK_MASK) >>> CHUNK_SHIFT;
+        int chunkRows = (rows + CHUNK_MASK) >>> CHUNK_SHIFT;
+        this.chunks = new Chunk[chunkRows * this.chunkCols];
+        Arrays.fill(this.chunks, WALL_CHUNK);
+        this.owned = new boolean[this.chunks.length];
+        this.fields = new Field[this.chunks.length][];
+    }
+
+    /**
+     * Constructor of a grid sharing all chunks of another grid.
+     *
+     * @param other grid whose chunks are shared
+     */
+    private TileGrid(TileGrid other) {
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.chunkCols = other.chunkCols;
+        this.chunks = other.chunks.clone();
+        this.owned = new boolean[this.chunks.length];
+        this.fields = new Field[this.chunks.length][];
+    }
+
+    /**
+     * Creates a grid with the same terrain and adjacency that shares chunks with this grid. Neither grid owns the
+     * shared chunks anymore, so both copy a chunk before writing to it. Fields are not shared.
+     *
+     * @return new grid without materialized fields
+     */
+    TileGrid share() {
+        Arrays.fill(this.owned, false);
+        return new TileGrid(this);
+    }
+
+    /**
+     * Returns number of cells in the grid.
+     *
+     * @return number of cells
+     */
+    int size() {
+        return rows * cols;
+    }
+
+    /**
+     * Returns terrain code of the cell.
+     *
+     * @param cell cell id
+     * @return terrain code
+     */
+    byte terrain(int cell) {
+        int row = cell / cols;
+        int col = cell - row * cols;
+        return chunks[chunkIndex(row, col)].terrain[offset(row, col)];
+    }
+
+    /**
+     * Sets terrain code of the cell. A shared chunk is copied only if the code really changes.
+     *
+     * @param cell cell id
+     * @param code terrain code
+     */
+    void setTerrain(int cell, byte code) {
+        int row = cell / cols;
+        int col = cell - row * cols;
+        int index = chunkIndex(row, col);
+        int offset = offset(row, col);
+        if (chunks[index].terrain[offset] != code) {
+            writable(index).terrain[offset] = code;
+        }
+    }
+
+    /**
+     * Returns bitmask of passable neighbours of the cell.
+     *
+     * @param cell cell id
+     * @return bitmask indexed by direction ordinal
+     */
+    byte exits(int cell) {
+        int row = cell / cols;
+        int col = cell - row * cols;
+        return chunks[chunkIndex(row, col)].exits[offset(row, col)];
+    }
+
+    /**
+     * Sets bitmask of passable neighbours of the cell. A shared chunk is copied only if the mask really changes.
+     *
+     * @param cell cell id
+     * @param mask bitmask indexed by direction ordinal
+     */
+    void setExits(int cell, byte mask) {
+        int row = cell / cols;
+        int col = cell - row * cols;
+        int index = chunkIndex(row, col);
+        int offset = offset(row, col);
+        if (chunks[index].exits[offset] != mask) {
+            writable(index).exits[offset] = mask;
+        }
+    }
+
+    /**
+     * Returns materialized field of the cell.
+     *
+     * @param cell cell id
+     * @return field or null if it was not created yet
+     */
+    Field field(int cell) {
+        int row = cell / cols;
+        int col = cell - row * cols;
+        Field[] chunkFields = fields[chunkIndex(row, col)];
+        return chunkFields == null ? null : chunkFields[offset(row, col)];
+    }
+
+    /**
+     * Stores field for the cell. Field storage of the chunk is allocated on the first store.
+     *
+     * @param cell  cell id
+     * @param field field to be stored
+     */
+    void setField(int cell, Field field) {
+        int row = cell / cols;
+        int col = cell - row * cols;
+        int index = chunkIndex(row, col);
+        if (fields[index] == null) {
+            fields[index] = new Field[CHUNK_SIZE * CHUNK_SIZE];
+        }
+        fields[index][offset(row, col)] = field;
+    }
+
+    /**
+     * Returns the chunk with the given index, replacing the wall flyweight or a shared chunk by a private copy if
+     * needed.
+     *
+     * @param index index of the chunk
+     * @return chunk that can be written to
+     */
+    private Chunk writable(int index) {
+        if (!owned[index]) {
+            chunks[index] = chunks[index] == WALL_CHUNK ? new Chunk() : new Chunk(chunks[index]);
+            owned[index] = true;
+        }
+        return chunks[index];
+    }
+
+    /**
+     * Returns index of the chunk containing the position.
+     *
+     * @param row row of the cell
+     * @param col column of the cell
+     * @return index of the chunk
+     */
+    private int chunkIndex(int row, int col) {
+        return (row >>> CHUNK_SHIFT) * chunkCols + (col >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Returns position of the cell inside its chunk.
+     *
+     * @param row row of the cell
+     * @param col column of the cell
+     * @return offset inside the chunk arrays
+     */
+    private static int offset(int row, int col) {
+        return ((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK);
+    }
+
+    /**
+     * Returns terrain code matching the type of the field.
+     *
+     * @param field field
+     * @return terrain code
+     */
+    static byte codeOf(Field field) {
+        if (field instanceof TargetField) {
+            return TARGET;
+        }
+        return field.canMove() ? PATH : WALL;
+    }
+}
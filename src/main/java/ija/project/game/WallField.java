@@ -16,6 +16,10 @@ public class WallField extends AbstractObservable implements Field {
      * Column of the field.
      */
     private final int col;
+    /**
+     * Cell id of the field, known once the field is associated with the maze.
+     */
+    private int cell;
     /**
      * Maze to which the field belongs
      */
@@ -40,6 +44,7 @@ public class WallField extends AbstractObservable implements Field {
      */
     public void setMaze(Maze maze) {
         this.maze = maze;
+        this.cell = maze.cellId(this.row, this.col);
     }
 
     /**
@@ -50,12 +55,8 @@ public class WallField extends AbstractObservable implements Field {
      */
     @Override
     public Field nextField(Direction dirs) {
-        return switch (dirs) {
-            case D -> this.maze.getField(this.row + 1, this.col);
-            case L -> this.maze.getField(this.row, this.col - 1);
-            case R -> this.maze.getField(this.row, this.col + 1);
-            case U -> this.maze.getField(this.row - 1, this.col);
-        };
+        int next = this.maze.neighbour(this.cell, dirs);
+        return next < 0 ? null : this.maze.getField(next);
     }
 
     /**
@@ -140,6 +141,16 @@ public class WallField extends AbstractObservable implements Field {
         return this.col;
     }
 
+    /**
+     * Returns the cell id of the field in its maze.
+     *
+     * @return cell id of the field
+     */
+    @Override
+    public int getCellId() {
+        return this.cell;
+    }
+
     /**
      * Check if the field has point.
      *
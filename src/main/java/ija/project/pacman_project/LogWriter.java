@@ -143,19 +143,15 @@ public class LogWriter extends PrintWriter implements Observable.Observer {
                     print('X');
                 } else if (maze.getField(row, column) instanceof TargetField) {
                     print('T');
-                } else if (maze.getField(row, column) instanceof PathField) {
-                    if (maze.getField(row, column).get().size() == 0) {
-                        print('.');
+                } else if (maze.getField(row, column) instanceof PathField path) {
+                    if (path.getPacman() != null) {
+                        print('S');
+                    } else if (path.hasGhost()) {
+                        print('G');
+                    } else if (path.hasKey()) {
+                        print('K');
                     } else {
-                        for (MazeObject o : maze.getField(row, column).get()) {
-                            if (o instanceof PacmanObject) {
-                                print('S');
-                            } else if (o instanceof GhostObject) {
-                                print('G');
-                            } else if (o instanceof KeyObject) {
-                                print('K');
-                            }
-                        }
+                        print('.');
                     }
                 }
             }
@@ -5,6 +5,7 @@ import ija.project.common.Maze;
 import ija.project.common.MazeObject;
 import ija.project.game.*;
 import ija.project.view.FieldView;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
@@ -13,16 +14,14 @@ import javafx.scene.text.Text;
 import javafx.stage.WindowEvent;
 
 import java.io.*;
-import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 /**
@@ -33,17 +32,9 @@ public class PacManController {
     /** */
     private final PacManView view;
     /**
-     * Speed of ghosts
+     * Loop advancing the game engine on pulses of the JavaFX thread, null when no game runs
      */
-    double ghostsSpeed = 2;
-    /**
-     * Speed of pacman
-     */
-    double pacManSpeed = 3.5;
-    /**
-     * List of timers for ghosts and pacman movement
-     */
-    private final List<Timer> timers = new ArrayList<Timer>();
+    private GameLoop gameLoop;
     /**
      * List of threads to they can be managed
      */
@@ -64,14 +55,47 @@ public class PacManController {
      * Log writer for writing to log file
      */
     private LogWriter logWriter;
+    /**
+     * Directory with compiled maps and distance tables
+     */
+    private static final Path CACHE_DIRECTORY = Paths.get(".cache", "maps");
+    /**
+     * Cache of compiled maps
+     */
+    private final MazeCache mazeCache = new MazeCache(CACHE_DIRECTORY);
+    /**
+     * Templates of already loaded maps, new games of the same map share their terrain while the map file keeps its
+     * size and modification time
+     */
+    private final Map<String, LoadedTemplate> templates = new HashMap<>();
     /**
      * Current game state
      */
     public GameState gameState;
     /**
-     * Path of pacman set on click to the maze
+     * Engine advancing the current game
+     */
+    private GameEngine engine;
+    /**
+     * Seed of ghost decisions set by the user, null if every game gets a random seed
+     */
+    private Long fixedSeed;
+    /**
+     * Seed of ghost decisions in the current game
+     */
+    private long gameSeed;
+    /**
+     * Speed multipliers switched by the F key
+     */
+    private static final double[] GAME_SPEEDS = {1, 2, 4, 8, GameClock.UNBOUNDED};
+    /**
+     * Clock converting real time to ticks of the game, it keeps its speed between games
+     */
+    private final GameClock clock = new GameClock();
+    /**
+     * Whether paths on very large maps may be slightly longer than the shortest ones to be found faster
      */
-    List<Field.Direction> pacmanPath;
+    private boolean approximatePaths;
     /**
      * String for current username
      */
@@ -98,7 +122,6 @@ public class PacManController {
      */
     public PacManController(PacManView view) {
         this.view = view;
-        this.pacmanPath = new ArrayList<>();
         this.leaders = new Hashtable<>();
     }
 
@@ -110,8 +133,14 @@ public class PacManController {
         // stop moving if any
         changeGameState(GameState.DEFAULT);
         generateGame();
+        gameSeed = fixedSeed != null ? fixedSeed : new SplittableRandom().nextLong();
+        engine = new GameEngine(maze, gameSeed);
+        engine.setApproximatePaths(approximatePaths);
+        // only the topology of the loaded map gets a table, after a bomb the path finder searches instead
+        engine.getPathFinder().setDistanceTable(DistanceTable.of(maze, CACHE_DIRECTORY));
         view.generateGame();
         startLogging();
+        engine.setLogObserver(logWriter);
         // start moving
         startTimersThreads();
 
@@ -125,22 +154,23 @@ public class PacManController {
         if (gameState == GameState.DEFAULT) {
             switch (e.getCode()) {
                 case UP, W -> {
-                    pacmanPath.clear();
+                    engine.clearPacmanPath();
                     maze.getPacMan().setDirection(Field.Direction.U);
                 }
                 case DOWN, S -> {
-                    pacmanPath.clear();
+                    engine.clearPacmanPath();
                     maze.getPacMan().setDirection(Field.Direction.D);
                 }
                 case LEFT, A -> {
-                    pacmanPath.clear();
+                    engine.clearPacmanPath();
                     maze.getPacMan().setDirection(Field.Direction.L);
                 }
                 case RIGHT, D -> {
-                    pacmanPath.clear();
+                    engine.clearPacmanPath();
                     maze.getPacMan().setDirection(Field.Direction.R);
                 }
                 case E -> setBomb();
+                case F -> switchGameSpeed();
             }
         }
         if (Objects.requireNonNull(e.getCode()) == KeyCode.P) {
@@ -153,67 +183,45 @@ public class PacManController {
     }
 
     /**
-     * Starts separate thread for enabling ghosts to be eaten by pacman
+     * Starts the loop advancing the game engine, the game continues from the tick where the loop stopped
      */
-    public void setEatableThread() {
-        Thread eatableThread = new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(10000);
-                    // Set ghost to be eatable
-                    for (MazeObject ghost : maze.getGhosts()) {
-                        ((GhostObject) ghost).setEatable(true);
-                    }
-                    // Wait for eatableDuration seconds
-                    Thread.sleep(5000);
-                    // Set ghost to be uneatable
-                    for (MazeObject ghost : maze.getGhosts()) {
-                        ((GhostObject) ghost).setEatable(false);
-                    }
-                    // Wait for interval seconds
-                    Thread.sleep(10000);
-                } catch (InterruptedException e) {
-                    break;
-                }
-            }
-        });
-        threads.add(eatableThread);
-        eatableThread.start();
+    private void setMoveTimer() {
+        if (gameLoop == null) {
+            gameLoop = new GameLoop();
+        }
+        gameLoop.start();
     }
 
     /**
-     * Set timer for moving ghosts and pacman
-     * Ghosts movement is handled differently than pacman's in separate task
+     * Loop advancing the game engine by ticks the game clock counts from the time elapsed between pulses of the
+     * JavaFX thread. All events of the game run on the scheduler of the engine, so no other timer or thread is needed
+     * and a stopped loop costs nothing.
      */
-    private void setMoveTimer() {
-        Timer timer = new Timer();
-        timers.add(timer);
-        TimerTask ghostsTask = new TimerTask() {
-            public void run() {
-                Platform.runLater(() -> {
-                    try {
-                        moveGhosts();
-                    } catch (GameException e) {
-                        handleGameEvent(e);
-                    }
-                });
-            }
-        };
-        TimerTask pacManTask = new TimerTask() {
-            public void run() {
-                Platform.runLater(() -> {
-                    try {
-                        movePacman();
-                    } catch (GameException e) {
-                        handleGameEvent(e);
-                    }
-                });
-            }
-        };
+    private final class GameLoop extends AnimationTimer {
+        /**
+         * Maximal time spent running ticks in one pulse, ticks beyond it are dropped so that the view stays responsive
+         */
+        private static final long PULSE_BUDGET_NANOS = 12_000_000L;
 
-        /* Speed in field per second */
-        timer.schedule(ghostsTask, 0, (long) (1000.0 / ghostsSpeed));
-        timer.schedule(pacManTask, 0, (long) (1000.0 / pacManSpeed));
+        @Override
+        public void start() {
+            clock.start();
+            super.start();
+        }
+
+        @Override
+        public void handle(long now) {
+            long due = clock.advance(now);
+            long deadline = System.nanoTime() + PULSE_BUDGET_NANOS;
+            for (long i = 0; i < due && System.nanoTime() < deadline; i++) {
+                try {
+                    engine.step();
+                } catch (GameException e) {
+                    handleGameEvent(e);
+                    return;
+                }
+            }
+        }
     }
 
     /**
@@ -243,9 +251,8 @@ public class PacManController {
      */
     private void cancelTimersThreads() {
         System.out.println("Threads canceled");
-        for (Timer t : timers)
-            t.cancel();
-        timers.clear();
+        if (gameLoop != null)
+            gameLoop.stop();
         for (Thread th : threads)
             th.interrupt();
         threads.clear();
@@ -256,7 +263,6 @@ public class PacManController {
      */
     private void startTimersThreads() {
         setMoveTimer();
-        setEatableThread();
     }
 
     /**
@@ -299,54 +305,37 @@ public class PacManController {
      */
     public void setMap(String map) {
         this.currentMap = map;
-        File file = new File(map);
-        URI uri = file.toURI();
-        URL url;
-        try {
-            url = uri.toURL();
-        } catch (MalformedURLException e) {
-            throw new RuntimeException(e);
-        }
-        this.loadFile(url);
+        this.loadFile(new File(map), true);
     }
 
     public void setLoadedMap(String map) {
         this.currentMap = map;
-        File file = new File(map);
-        URI uri = file.toURI();
-        URL url;
-        try {
-            url = uri.toURL();
-        } catch (MalformedURLException e) {
-            throw new RuntimeException(e);
-        }
-        this.loadFile(url);
+        this.loadFile(new File(map), false);
     }
 
     /**
      * Method for loading file from game resources
      *
-     * @param file path to file (either just a map or a save)
+     * @param file     path to file (either just a map or a save)
+     * @param compiled true if the map can be taken from its template or the cache of compiled maps
      */
-    public void loadFile(URL file) {
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(file.openStream()))) {
-            String line;
-            MazeConfigure cfg = new MazeConfigure();
-            line = br.readLine();
-            String[] words = line.split("\\s+");
-
+    public void loadFile(File file, boolean compiled) {
+        try {
             int lives = 3;
             int score = 0;
-            cfg.startReading(Integer.parseInt(words[0]), Integer.parseInt(words[1]));
-            while (!Objects.equals(line = br.readLine(), null)) {
-                if (line.trim().isEmpty()) {
-                    break;
+            if (compiled) {
+                long size = Files.size(file.toPath());
+                long mtime = Files.getLastModifiedTime(file.toPath()).toMillis();
+                LoadedTemplate loaded = templates.get(file.getPath());
+                if (loaded == null || loaded.size != size || loaded.mtime != mtime) {
+                    // a new or edited map is loaded again, the cache of compiled maps checks it too
+                    loaded = new LoadedTemplate(MazeTemplate.of(mazeCache.load(file.toPath())), size, mtime);
+                    templates.put(file.getPath(), loaded);
                 }
-                cfg.processLine(line);
+                this.maze = loaded.template.newGame();
+            } else {
+                this.maze = MazeLoader.load(file.toPath());
             }
-            cfg.stopReading();
-
-            this.maze = cfg.createMaze();
             ((PacmanObject) this.maze.getPacMan()).setScore(score);
             ((PacmanObject) this.maze.getPacMan()).setLives(lives);
 
@@ -355,35 +344,6 @@ public class PacManController {
         }
     }
 
-    /**
-     * Moves Ghosts in currently set directions
-     * @throws GameException when pacman loses game
-     */
-    public void moveGhosts() throws GameException {
-        for (MazeObject mazeObject : maze.getGhosts()) {
-            GhostObject ghost = (GhostObject) mazeObject;
-            chaseAlgorithm(ghost);
-            ghost.move(ghost.getDirection());
-        }
-        checkCollision();
-    }
-
-    /**
-     * Moves Pacman in currently set direction
-     * @throws GameException when pacman loses or wins game
-     */
-    public void movePacman() throws GameException {
-        if(pacmanPath != null && !pacmanPath.isEmpty()){
-            maze.getPacMan().setDirection(pacmanPath.remove(0));
-        }
-        maze.getPacMan().move(maze.getPacMan().getDirection());
-        checkCollision();
-        checkWin();
-        if (checkTarget())
-            ((TargetField) maze.getTarget()).setOpen();
-
-    }
-
     /**
      * Method for MazeObjects controll on a separate thread
      * @throws GameException, IOException
@@ -525,7 +485,7 @@ public class PacManController {
                         .toList();
                 Field field = maze.getField(coords.get(0), coords.get(1));
                 if(field.canMove()){
-                    ((PathField) field).point = false;
+                    ((PathField) field).setPoint(false);
                 }
                 if (splitedLine.size() == 7 && splitedLine.get(6).equals("k")) {
                     maze.removeKey(maze.getField(coords.get(0), coords.get(1)).getKey());
@@ -573,7 +533,7 @@ public class PacManController {
                 }
                 maze.getPacMan().move(field);
                 if (p)
-                    ((PathField)field).point = true;
+                    ((PathField)field).setPoint(true);
                 if (k)
                     ((PathField)field).setKey();
                 ((PacmanObject) maze.getPacMan()).setScore(score);
@@ -647,12 +607,7 @@ public class PacManController {
                     throw new RuntimeException(e);
                 }
             }else{
-                for (MazeObject object : field.get()) {
-                    if (object instanceof BombObject) {
-                        bomb = (BombObject) object;
-                        break;
-                    }
-                }
+                bomb = ((PathField) field).getBomb();
                 if(bomb != null) bomb.setTimer(Integer.parseInt(splitedLine.get(2)));
             }
         }else if(line.startsWith("F")){
@@ -664,82 +619,10 @@ public class PacManController {
         }
     }
 
-    /**
-     * Checks if Pacman and Ghosts are on the same field. If so, checks if Ghost is
-     * eatable. If yes, Ghost is moved to start. If not, Pacman and Ghosts are moved
-     * to start.
-     * @throws GameException pacman looses all of lives
-     */
-    private void checkCollision() throws GameException {
-        for (MazeObject mazeObject : maze.getGhosts()) {
-            GhostObject ghost = (GhostObject) mazeObject;
-            if (ghost.getField().equals(maze.getPacMan().getField())) {
-                if (ghost.isEatable()) {
-                    ((PacmanObject) maze.getPacMan()).setScore(maze.getPacMan().getScore() + 100);
-                    ghost.moveToStart();
-                } else {
-                    maze.moveObjectsToStart();
-                }
-            }
-        }
-    }
-
-    /**
-     * Checks if Pacman is on TargetField and all keys are colledted. If so, throws
-     * CompletedGame exception.
-     * @throws GameException when pacman completes game
-     */
-    private void checkWin() throws GameException {
-        if (maze.getPacMan().getField() instanceof TargetField) {
-            if (checkTarget()) {
-                throw new GameException(GameException.TypeOfException.CompletedGame);
-            }
-        }
-    }
-
     private boolean checkTarget() {
         return maze.canComplete();
     }
 
-    /**
-     * Chooses direction to move in for a ghost
-     *
-     * @param ghost Ghost which direction will be set
-     */
-    public void chaseAlgorithm(MazeObject ghost) {
-        Field.Direction dir = ghost.getDirection();
-        // create list of available directions
-        List<Field.Direction> availableDirections = new CopyOnWriteArrayList<>();
-        for (Field.Direction d : Field.Direction.values()) {
-            if (ghost.canMove(d)) {
-                availableDirections.add(d);
-            }
-        }
-        // if you can't continue in the same direction, choose random direction, try not
-        // to go back, if the only option is to go back, go back
-        if (!availableDirections.contains(dir)) {
-            availableDirections.remove(dir.opposite(dir));
-            if (availableDirections.size() == 0) {
-                dir = dir.opposite(dir);
-            } else {
-                Random rand = new Random();
-                dir = availableDirections.get(rand.nextInt(availableDirections.size()));
-            }
-        } else {
-            // if you can continue in the same direction, choose random direction with 30%
-            // chance, but try not to go back
-            availableDirections.remove(dir.opposite(dir));
-            Random rand = new Random();
-            if (rand.nextInt(10) < 3) {
-                dir = availableDirections.get(rand.nextInt(availableDirections.size()));
-            }
-        }
-        ghost.setDirection(dir);
-    }
-
-
-
-
     /**
      * Generates new game for player. Total score is set to 0.
      */
@@ -851,127 +734,83 @@ public class PacManController {
         if(gameState == GameState.DEFAULT){
             Field field = fieldView.getModel();
             if(field instanceof PathField){
-                if(pacmanPath != null)pacmanPath.clear();
-                pacmanPath = findPath(maze.getPacMan().getField(), field);
+                engine.setPacmanPath(findPath(maze.getPacMan().getField(), field), field.getCellId());
             }
         }
 
     }
 
     /**
-     * Finds path from pacmanPosition to destField using A* algorithm. Returns list of directions to move in to get to destField. Uses pythagorean theorem to calculate distance between fields as heuristic.
+     * Finds path from pacmanPosition to destField using A* algorithm. Returns list of directions to move in to get to destField. Uses Manhattan distance between fields as heuristic.
      * @param pacmanPosition Location of pacman
      * @param destField Destination field
-     * @return Path to the destination field
+     * @return Path to the destination field, empty if the destination cannot be reached
      */
     public List<Field.Direction> findPath(Field pacmanPosition, Field destField){
-        List<Field.Direction> path = new ArrayList<>();
-        List<PathField> openList = new ArrayList<>();
-        List<PathField> closedList = new ArrayList<>();
-        PathField currentField = (PathField)pacmanPosition;
-        openList.add(currentField);
-        float g = 0f;
-        // Reset fields
-        for(int row = 0; row < maze.numRows(); row++){
-            for(int col = 0; col < maze.numCols(); col++){
-                if(maze.getField(row, col).canMove()){
-                    PathField pathField = (PathField)maze.getField(row, col);
-                    pathField.setF(0f);
-                    pathField.setPrevious(null);
-                }
+        return engine.findPath(pacmanPosition.getCellId(), destField.getCellId());
+    }
 
+    /**
+     * Sets bomb on the field of pacman, the game engine explodes it after 3 seconds. Explosion destroys walls that
+     * connect to the field where the bomb is.
+     */
+    public void setBomb(){
+        engine.placeBomb();
+    }
+
+    /**
+     * Sets the seed of ghost decisions used by following games. Games with the same seed and the same moves of
+     * pacman are identical.
+     * @param seed Seed of the games, null for a random seed every game
+     */
+    public void setGameSeed(Long seed) {
+        fixedSeed = seed;
+    }
+
+    /**
+     * Sets the speed of the game clock, the game runs the given number of game seconds per real second.
+     * @param speed Speed multiplier, {@link GameClock#UNBOUNDED} to run as fast as possible
+     */
+    public void setGameSpeed(double speed) {
+        clock.setSpeed(speed);
+    }
+
+    /**
+     * Returns the speed of the game clock.
+     * @return Speed multiplier
+     */
+    public double getGameSpeed() {
+        return clock.getSpeed();
+    }
+
+    /**
+     * Switches the speed of the game clock to the next one of {@link #GAME_SPEEDS}
+     */
+    private void switchGameSpeed() {
+        int next = 0;
+        for (int i = 0; i < GAME_SPEEDS.length; i++) {
+            if (GAME_SPEEDS[i] == clock.getSpeed()) {
+                next = (i + 1) % GAME_SPEEDS.length;
             }
         }
-        // A*
-        while(!openList.isEmpty()){
-            currentField = openList.get(0);
-            for(PathField field : openList){
-                if(field.getF() < currentField.getF()){
-                    currentField = field;
-                }
-            }
-            openList.remove(currentField);
-            closedList.add(currentField);
-            if(currentField == destField){
-                break;
-            }
-            for(Field.Direction dir : Field.Direction.values()){
-                if(currentField.nextField(dir).canMove()){
-                    PathField neighbour = (PathField)currentField.nextField(dir);
-                    if(!closedList.contains(neighbour)){
-                        float tempG = g + 1;
-                        float tempH = (float) Math.sqrt(Math.pow(neighbour.getRow() - destField.getRow(), 2) + Math.pow(neighbour.getCol() - destField.getCol(), 2));
-                        float tempF = tempG + tempH;
-                        if(openList.contains(neighbour)){
-                            if(tempF < neighbour.getF()){
-                                neighbour.setF(tempF);
-                                neighbour.setPrevious(currentField);
-                            }
-                        }else{
-                            neighbour.setF(tempF);
-                            neighbour.setPrevious(currentField);
-                            openList.add(neighbour);
-                        }
-                    }
-                }
-            }
-        }
-        // Recreate path
-        while(currentField.getPrevious() != null){
-            Field.Direction dir;
-            if(currentField.getPrevious().getRow() < currentField.getRow()){
-                dir = Field.Direction.D;
-            }else if(currentField.getPrevious().getRow() > currentField.getRow()){
-                dir = Field.Direction.U;
-            }else if(currentField.getPrevious().getCol() < currentField.getCol()){
-                dir = Field.Direction.R;
-            }else{
-                dir = Field.Direction.L;
-            }
-            path.add(0, dir);
-            currentField = currentField.getPrevious();
-        }
-        System.out.println(path);
-        return path;
+        clock.setSpeed(GAME_SPEEDS[next]);
     }
 
     /**
-     * Sets bomb on the field and explodes it after 3 seconds. Explosion destroys walls that connect to the field where the bomb is. Task is run in a new thread.
+     * Allows paths of pacman slightly longer than the shortest ones on very large maps, they are found much faster
+     * by a hierarchical search. Used from the next game.
+     * @param approximate True to allow approximate paths, false for shortest paths only
      */
-    public void setBomb(){
-        if(((PacmanObject)maze.getPacMan()).getAvailableBombs() > 0){
-            ((PacmanObject)maze.getPacMan()).setBombCount(((PacmanObject) maze.getPacMan()).getAvailableBombs() - 1);
-            new Thread(()->{
-                Field bombLocationField = maze.getPacMan().getField();
-                BombObject bomb = new BombObject(bombLocationField, logWriter);
-                Platform.runLater(() -> {
-                    try {
-                        bombLocationField.put(bomb);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                });
-                for(int i = 0; i < 3; i++){
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException(e);
-                    }
-                    Platform.runLater(()-> bomb.setTimer(bomb.getTimeToDetonation() - 1));
-                }
-                Platform.runLater(()->{
-                    for (Field.Direction dir : Field.Direction.values()){
-                        Field field = bombLocationField.nextField(dir);
-                        if(field.canMove()) continue;
-                        if(field.getRow() != 0 && field.getCol() != 0 && field.getRow() != maze.numRows() - 1 &&  field.getCol() != maze.numCols() - 1){
-                            Field newField = new PathField(field.getRow(), field.getCol());
-                            maze.swapFields(field, newField);
-                        }
-                    }
-                });
-            }).start();
-        }
+    public void setApproximatePaths(boolean approximate) {
+        approximatePaths = approximate;
+    }
 
+    /**
+     * Returns the seed of ghost decisions in the current game.
+     * @return Seed of the game
+     */
+    public long getGameSeed() {
+        return gameSeed;
     }
 
     /**
@@ -1050,5 +889,34 @@ public class PacManController {
         }
     }
 
+    /**
+     * Template of a map with the size and modification time of the map file it was loaded from.
+     */
+    private static final class LoadedTemplate {
+        /**
+         * Template of the map
+         */
+        final MazeTemplate template;
+        /**
+         * Size of the map file
+         */
+        final long size;
+        /**
+         * Modification time of the map file
+         */
+        final long mtime;
 
-}
\ No newline at end of file
+        /**
+         * Constructor.
+         *
+         * @param template template of the map
+         * @param size     size of the map file
+         * @param mtime    modification time of the map file
+         */
+        LoadedTemplate(MazeTemplate template, long size, long mtime) {
+            this.template = template;
+            this.size = size;
+            this.mtime = mtime;
+        }
+    }
+}
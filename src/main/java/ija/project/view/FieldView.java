@@ -110,20 +110,21 @@ public class FieldView extends Pane implements Observable.Observer {
         getChildren().setAll(Food);
         if (model.canMove()) {
             objects.clear();
-            List<MazeObject> objectsOnField = model.get();
-            for (MazeObject o : objectsOnField) {
-                if (o instanceof PacmanObject) {
-                    objects.add(new PacmanObjectView(this, o));
-                } else if (o instanceof GhostObject) {
-                    objects.add(new GhostObjectView(this, o));
-                } else if (o instanceof KeyObject) {
+            if (model instanceof PathField path) {
+                if (path.getPacman() != null) {
+                    objects.add(new PacmanObjectView(this, path.getPacman()));
+                }
+                for (int id = path.nextGhost(0); id >= 0; id = path.nextGhost(id + 1)) {
+                    objects.add(new GhostObjectView(this, model.getMaze().getGhost(id)));
+                }
+                if (path.getKey() != null) {
                     this.Food.setVisible(false);
-                    objects.add(new KeyObjectView(this, o));
-                }else if(o instanceof BombObject){
-                    objects.add(new BombObjectView(this, o));
+                    objects.add(new KeyObjectView(this, path.getKey()));
+                }
+                if (path.getBomb() != null) {
+                    objects.add(new BombObjectView(this, path.getBomb()));
                 }
             }
-
         }
         getChildren().addAll(objects);
     }
@@ -0,0 +1,58 @@
+package ija.project.game;
+
+import ija.project.common.Maze;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of distance tables stored in the cache directory.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+class DistanceTableTest {
+    /**
+     * Cache directory of the tables
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Checks that a table with a damaged matrix is computed again instead of being used.
+     *
+     * @throws IOException if the map or the table cannot be read or written
+     */
+    @Test
+    void damagedMatrixIsComputedAgain() throws IOException {
+        Maze maze = MazeLoader.load(Path.of("data/mapa01.txt"));
+        DistanceTable.of(maze, directory);
+        Path file;
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> tables = files.toList();
+            assertEquals(1, tables.size());
+            file = tables.get(0);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        // distances of the last cell, they are at the end of the matrix
+        for (int i = bytes.length - 64; i < bytes.length; i++) {
+            bytes[i] = 0;
+        }
+        Files.write(file, bytes);
+
+        DistanceTable table = DistanceTable.of(maze, directory);
+        PathFinder finder = new PathFinder(maze);
+        for (int from = 0; from < maze.numCells(); from++) {
+            for (int to = 0; to < maze.numCells(); to++) {
+                if (maze.isPassable(from) && maze.isPassable(to)) {
+                    assertEquals(finder.distance(from, to), table.distance(from, to), from + " to " + to);
+                }
+            }
+        }
+    }
+}
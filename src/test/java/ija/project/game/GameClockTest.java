@@ -0,0 +1,57 @@
+package ija.project.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of the game clock converting real time to ticks.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+class GameClockTest {
+    /**
+     * Length of one tick at speed 1 in nanoseconds
+     */
+    private static final long TICK = 1_000_000_000L / GameClock.TICKS_PER_SECOND;
+
+    /**
+     * Checks ticks due at speed 1 and 4, also when real time is negative.
+     */
+    @Test
+    void countsTicksOfElapsedTime() {
+        for (long start : new long[]{0, -5_000_000_000L, Long.MIN_VALUE / 2}) {
+            GameClock clock = new GameClock();
+            clock.start();
+            assertEquals(1, clock.advance(start), "start " + start);
+            assertEquals(5, clock.advance(start + 5 * TICK), "start " + start);
+            clock.setSpeed(4);
+            assertEquals(8, clock.advance(start + 7 * TICK), "start " + start);
+        }
+    }
+
+    /**
+     * Checks that a stall counts only a limited time and that a restart does not count the pause.
+     */
+    @Test
+    void dropsStallsAndPauses() {
+        GameClock clock = new GameClock();
+        clock.start();
+        clock.advance(0);
+        assertEquals(GameClock.ticks(0.2), clock.advance(60_000_000_000L));
+        clock.start();
+        assertEquals(1, clock.advance(120_000_000_000L));
+        assertEquals(1, clock.advance(120_000_000_000L + TICK));
+    }
+
+    /**
+     * Checks that the unbounded clock asks for as many ticks as can be run.
+     */
+    @Test
+    void unboundedRunsAsFastAsPossible() {
+        GameClock clock = new GameClock();
+        clock.setSpeed(GameClock.UNBOUNDED);
+        clock.start();
+        assertEquals(Long.MAX_VALUE, clock.advance(-1));
+        assertEquals(GameClock.ticks(10), 10 * GameClock.TICKS_PER_SECOND);
+    }
+}
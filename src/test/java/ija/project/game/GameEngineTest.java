@@ -0,0 +1,251 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the headless game engine: reproducible games, timing of the eatable phase and bombs in ticks and
+ * collisions of pacman with ghosts.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+class GameEngineTest {
+    /**
+     * Map where pacman, the target and a ghost are in separate parts, so nothing can end the game
+     */
+    private static final String[] SEPARATED = {
+            ".SX..",
+            "..X.T",
+            "XXXXX",
+            "G....",
+            "....."
+    };
+
+    /**
+     * Directory for generated maps
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Checks that the same seed gives the same game with any parallelism of ghost decisions.
+     *
+     * @throws IOException if a map cannot be loaded
+     */
+    @Test
+    void sameSeedGivesSameGame() throws IOException {
+        Path map = swarmMap();
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool four = new ForkJoinPool(4);
+        try {
+            for (long seed : new long[]{42, 7}) {
+                String expected = play(MazeLoader.load(map), seed, ForkJoinPool.commonPool());
+                assertEquals(expected, play(MazeLoader.load(map), seed, ForkJoinPool.commonPool()));
+                assertEquals(expected, play(MazeLoader.load(map), seed, single));
+                assertEquals(expected, play(MazeLoader.load(map), seed, four));
+            }
+            Path shipped = Path.of("data/mapa01.txt");
+            assertEquals(play(MazeLoader.load(shipped), 42, single), play(MazeLoader.load(shipped), 42, four));
+        } finally {
+            single.shutdown();
+            four.shutdown();
+        }
+    }
+
+    /**
+     * Checks that ghosts are eatable exactly in the ticks of the eatable phase.
+     *
+     * @throws Exception if the map cannot be loaded or the game ends
+     */
+    @Test
+    void eatablePhaseFollowsTicks() throws Exception {
+        Maze maze = load(SEPARATED);
+        GameEngine engine = new GameEngine(maze, 1);
+        long cycle = GameEngine.EATABLE_DURATION + GameEngine.EATABLE_INTERVAL + GameEngine.EATABLE_DELAY;
+        for (long tick = 0; tick < GameEngine.EATABLE_DELAY + 2 * cycle; tick++) {
+            engine.step();
+            long phase = tick < GameEngine.EATABLE_DELAY ? -1 : (tick - GameEngine.EATABLE_DELAY) % cycle;
+            boolean expected = phase >= 0 && phase < GameEngine.EATABLE_DURATION;
+            assertEquals(expected, maze.getGhostPopulation().isEatable(0), "tick " + tick);
+        }
+        assertEquals(GameEngine.EATABLE_DELAY + 2 * cycle, engine.tick());
+    }
+
+    /**
+     * Checks that a bomb explodes {@value GameEngine#BOMB_SECONDS} seconds after it was placed and that pacman
+     * cannot place more bombs than it has.
+     *
+     * @throws Exception if the map cannot be loaded or the game ends
+     */
+    @Test
+    void bombExplodesAfterItsTicks() throws Exception {
+        Maze maze = load(SEPARATED);
+        GameEngine engine = new GameEngine(maze, 1);
+        int wall = maze.cellId(1, 3);
+        engine.step(10);
+        assertTrue(engine.placeBomb());
+        long explosion = engine.tick() + (long) GameEngine.BOMB_SECONDS * GameEngine.TICKS_PER_SECOND;
+        while (engine.tick() < explosion) {
+            assertFalse(maze.isPassable(wall), "tick " + engine.tick());
+            engine.step();
+        }
+        assertFalse(maze.isPassable(wall));
+        engine.step();
+        assertTrue(maze.isPassable(wall));
+        // the border of the maze stays
+        assertFalse(maze.isPassable(maze.cellId(0, 2)));
+        assertTrue(engine.placeBomb());
+        assertTrue(engine.placeBomb());
+        assertFalse(engine.placeBomb());
+    }
+
+    /**
+     * Checks that a ghost which swapped cells with pacman between two checks collides with it.
+     *
+     * @throws Exception if the map cannot be loaded or a move ends the game
+     */
+    @Test
+    void swappedCellsCollide() throws Exception {
+        Maze maze = load(".GS.XT");
+        GhostPopulation ghosts = maze.getGhostPopulation();
+        int ghostCell = ghosts.cell(0);
+        int pacmanCell = maze.getPacMan().getField().getCellId();
+        ghosts.move(0, Field.Direction.R);
+        maze.getPacMan().move(Field.Direction.L);
+        assertEquals(pacmanCell, ghosts.cell(0));
+        assertEquals(ghostCell, maze.getPacMan().getField().getCellId());
+        int[] collisions = new int[maze.ghostCount()];
+        assertEquals(1, maze.collectCollisions(collisions));
+        assertEquals(0, collisions[0]);
+    }
+
+    /**
+     * Checks that pacman running against a ghost in a corridor loses a life and never passes through it.
+     *
+     * @throws Exception if the map cannot be loaded or the game ends
+     */
+    @Test
+    void pacmanDoesNotPassThroughGhost() throws Exception {
+        Maze maze = load("G.....S.XT");
+        GameEngine engine = new GameEngine(maze, 3);
+        maze.getPacMan().setDirection(Field.Direction.L);
+        for (int tick = 0; maze.getPacMan().getLives() == 3; tick++) {
+            assertTrue(tick < 20 * GameEngine.TICKS_PER_SECOND, "pacman did not meet the ghost");
+            engine.step();
+            int pacman = maze.getPacMan().getField().getCellId();
+            if (maze.getPacMan().getLives() == 3) {
+                assertTrue(maze.cellCol(maze.getGhostPopulation().cell(0)) < maze.cellCol(pacman), "tick " + tick);
+            }
+        }
+        assertEquals(2, maze.getPacMan().getLives());
+        assertEquals(maze.getPacMan().getStartField(), maze.getPacMan().getField());
+    }
+
+    /**
+     * Plays a game with scripted moves of pacman and finishes it by {@link GameEngine#run}.
+     *
+     * @param maze maze of the game
+     * @param seed seed of ghost decisions
+     * @param pool pool in which ghosts decide
+     * @return description of the game, equal for equal games
+     */
+    private static String play(Maze maze, long seed, ForkJoinPool pool) {
+        GameEngine engine = new GameEngine(maze, seed, pool);
+        GhostPopulation ghosts = maze.getGhostPopulation();
+        long hash = 1;
+        GameException.TypeOfException end = null;
+        try {
+            for (int tick = 0; tick < 1000; tick++) {
+                if (tick % 100 == 0) {
+                    maze.getPacMan().setDirection(Field.Direction.values()[tick / 100 % 4]);
+                }
+                if (tick == 50) {
+                    engine.placeBomb();
+                }
+                engine.step();
+                hash = hash * 31 + maze.getPacMan().getField().getCellId();
+                for (int id = 0; id < ghosts.size(); id++) {
+                    hash = hash * 31 + ghosts.cell(id);
+                }
+            }
+        } catch (GameException e) {
+            end = e.type;
+        }
+        if (end == null) {
+            end = engine.run(100_000);
+        }
+        for (int id = 0; id < ghosts.size(); id++) {
+            hash = hash * 31 + ghosts.cell(id);
+        }
+        return end + "@" + engine.tick() + " lives=" + maze.getPacMan().getLives() + " score="
+                + maze.getPacMan().getScore() + " hash=" + Long.toHexString(hash);
+    }
+
+    /**
+     * Writes a map with enough ghosts to decide them in parallel.
+     *
+     * @return path to the map
+     * @throws IOException if the map cannot be written
+     */
+    private Path swarmMap() throws IOException {
+        Random random = new Random(11);
+        int rows = 40;
+        int cols = 60;
+        char[][] cells = new char[rows][cols];
+        for (char[] row : cells) {
+            for (int col = 0; col < cols; col++) {
+                row[col] = random.nextInt(100) < 20 ? 'X' : '.';
+            }
+        }
+        cells[0][0] = 'S';
+        cells[rows - 1][cols - 1] = 'T';
+        for (int placed = 0; placed < 4 * GhostPlanner.PARALLEL_THRESHOLD; ) {
+            int row = random.nextInt(rows);
+            int col = random.nextInt(cols);
+            if (cells[row][col] == '.' && row + col > 10) {
+                cells[row][col] = 'G';
+                placed++;
+            }
+        }
+        String[] lines = new String[rows];
+        for (int row = 0; row < rows; row++) {
+            lines[row] = new String(cells[row]);
+        }
+        return write(lines);
+    }
+
+    /**
+     * Loads a maze from lines of a map.
+     *
+     * @param lines lines of the maze without the header
+     * @return loaded maze
+     * @throws IOException if the map cannot be written or loaded
+     */
+    private Maze load(String... lines) throws IOException {
+        return MazeLoader.load(write(lines));
+    }
+
+    /**
+     * Writes lines of a map with its header to a new file.
+     *
+     * @param lines lines of the maze without the header
+     * @return path to the map
+     * @throws IOException if the map cannot be written
+     */
+    private Path write(String... lines) throws IOException {
+        Path map = Files.createTempFile(directory, "map", ".txt");
+        Files.writeString(map, lines.length + " " + lines[0].length() + "\n" + String.join("\n", lines) + "\n");
+        return map;
+    }
+}
@@ -0,0 +1,265 @@
+package ija.project.game;
+
+import ija.project.common.Field;
+import ija.project.common.Maze;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of searches kept up to date on terrain changes. Walls of the maze are randomly added and removed by
+ * {@link Maze#swapFields} and after every change paths and distances of all path finder modes, the incremental path
+ * finder, the junction graph and the flow field are compared with a plain breadth-first search.
+ * @author Matej Vadovič(xvadov01), Alina Vinogradova(xvinog00)
+ */
+class TerrainChangeTest {
+    /**
+     * Number of terrain changes per maze
+     */
+    private static final int CHANGES = 150;
+    /**
+     * Number of compared queries after every change
+     */
+    private static final int QUERIES = 8;
+
+    /**
+     * Directory for generated maps
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Compares searches on the maps shipped with the game.
+     *
+     * @throws IOException if a map cannot be loaded
+     */
+    @Test
+    void shippedMapsMatchBreadthFirstSearch() throws IOException {
+        for (String map : new String[]{"data/mapa01.txt", "data/mapa02.txt", "data/mapa03.txt"}) {
+            compare(MazeLoader.load(Path.of(map)), new Random(map.hashCode()));
+        }
+    }
+
+    /**
+     * Compares searches on a generated map with corridors, an open room and parts cut off by walls.
+     *
+     * @throws IOException if the map cannot be written or loaded
+     */
+    @Test
+    void generatedMapMatchesBreadthFirstSearch() throws IOException {
+        Random random = new Random(2024);
+        int rows = 30;
+        int cols = 40;
+        StringBuilder text = new StringBuilder(rows + " " + cols + "\n");
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                boolean room = row >= 5 && row < 15 && col >= 20 && col < 32;
+                char c = room || random.nextInt(100) >= 35 ? '.' : 'X';
+                if (row == 0 && col == 0) {
+                    c = 'S';
+                } else if (row == rows - 1 && col == cols - 1) {
+                    c = 'T';
+                }
+                text.append(c);
+            }
+            text.append('\n');
+        }
+        Path map = directory.resolve("generated.txt");
+        Files.writeString(map, text);
+        compare(MazeLoader.load(map), random);
+    }
+
+    /**
+     * Changes terrain of the maze at random and compares all searches after every change. The start and goal of
+     * the incremental path finder move by single steps so that its repaired search is reused.
+     *
+     * @param maze   maze to change
+     * @param random random source of changes and queries
+     */
+    private static void compare(Maze maze, Random random) {
+        Map<PathFinder.Mode, PathFinder> finders = new EnumMap<>(PathFinder.Mode.class);
+        for (PathFinder.Mode mode : PathFinder.Mode.values()) {
+            PathFinder finder = new PathFinder(maze);
+            finder.setMode(mode);
+            finders.put(mode, finder);
+        }
+        IncrementalPathFinder incremental = new IncrementalPathFinder(maze);
+        JunctionGraph junctions = new JunctionGraph(maze);
+        FlowField flowField = new FlowField(maze);
+        int from = randomPassable(maze, random);
+        int to = randomPassable(maze, random);
+        for (int change = 0; change < CHANGES; change++) {
+            changeTerrain(maze, random);
+            for (int query = 0; query < QUERIES; query++) {
+                if (!maze.isPassable(from) || random.nextInt(4) == 0) {
+                    from = randomPassable(maze, random);
+                } else {
+                    from = step(maze, from, random);
+                }
+                if (!maze.isPassable(to) || random.nextInt(4) == 0) {
+                    to = randomPassable(maze, random);
+                } else {
+                    to = step(maze, to, random);
+                }
+                int[] expected = breadthFirst(maze, from);
+                String where = "change " + change + ", from " + from + " to " + to;
+                for (Map.Entry<PathFinder.Mode, PathFinder> entry : finders.entrySet()) {
+                    PathFinder finder = entry.getValue();
+                    String what = entry.getKey() + " at " + where;
+                    List<Field.Direction> path = finder.findPath(from, to);
+                    int distance = finder.distance(from, to);
+                    if (entry.getKey() == PathFinder.Mode.HIERARCHICAL) {
+                        // hierarchical paths are valid but may be longer than the shortest ones
+                        assertEquals(expected[to] < 0, distance < 0, what);
+                        assertTrue(distance >= expected[to], what);
+                        if (expected[to] > 0) {
+                            assertTrue(path.size() >= expected[to], what);
+                            assertEquals(to, walk(maze, from, path), what);
+                        }
+                    } else {
+                        assertPath(maze, from, to, expected[to], path, what);
+                        assertEquals(expected[to], distance, what);
+                    }
+                }
+                assertPath(maze, from, to, expected[to], incremental.findPath(from, to), "incremental at " + where);
+                assertEquals(expected[to], incremental.distance(from, to), "incremental at " + where);
+                assertPath(maze, from, to, expected[to], junctions.findPath(SearchContext.current(), from, to),
+                        "junction graph at " + where);
+                assertEquals(expected[to], junctions.distance(from, to), "junction graph at " + where);
+                flowField.update(from);
+                for (int cell = 0; cell < maze.numCells(); cell++) {
+                    assertEquals(expected[cell], flowField.distance(cell), "flow field at " + where + ", cell " + cell);
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns a random inner path field without objects into a wall or a random inner wall into a path field.
+     *
+     * @param maze   maze to change
+     * @param random random source
+     */
+    private static void changeTerrain(Maze maze, Random random) {
+        for (;;) {
+            int row = 1 + random.nextInt(maze.numRows() - 2);
+            int col = 1 + random.nextInt(maze.numCols() - 2);
+            Field field = maze.getField(row, col);
+            if (field instanceof WallField) {
+                maze.swapFields(field, new PathField(row, col));
+                return;
+            }
+            if (field instanceof PathField && field.isEmpty() && maze.getPacMan().getField() != field) {
+                maze.swapFields(field, new WallField(row, col));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks that a path is a shortest path between two cells.
+     *
+     * @param maze     maze of the path
+     * @param from     cell id of the start
+     * @param to       cell id of the destination
+     * @param expected length of the shortest path, -1 if the destination is not reachable
+     * @param path     checked path
+     * @param what     description of the query
+     */
+    private static void assertPath(Maze maze, int from, int to, int expected, List<Field.Direction> path,
+                                   String what) {
+        assertEquals(Math.max(expected, 0), path.size(), what);
+        if (expected > 0) {
+            assertEquals(to, walk(maze, from, path), what);
+        }
+    }
+
+    /**
+     * Follows a path and checks that no move goes into a wall.
+     *
+     * @param maze maze of the path
+     * @param from cell id of the start
+     * @param path directions of the path
+     * @return cell id of the end of the path
+     */
+    private static int walk(Maze maze, int from, List<Field.Direction> path) {
+        int cell = from;
+        for (Field.Direction dir : path) {
+            assertTrue(maze.canMove(cell, dir), "move " + dir + " from " + cell + " goes into a wall");
+            cell = maze.neighbour(cell, dir);
+        }
+        return cell;
+    }
+
+    /**
+     * Computes distances from a cell to all cells by breadth-first search over passable neighbours.
+     *
+     * @param maze   maze
+     * @param source cell id of the source
+     * @return number of moves to every cell, -1 for cells that cannot be reached
+     */
+    private static int[] breadthFirst(Maze maze, int source) {
+        int[] distances = new int[maze.numCells()];
+        Arrays.fill(distances, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        distances[source] = 0;
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (Field.Direction dir : Field.Direction.values()) {
+                int next = maze.neighbour(cell, dir);
+                if (next >= 0 && maze.isPassable(next) && distances[next] < 0) {
+                    distances[next] = distances[cell] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Returns a random passable cell.
+     *
+     * @param maze   maze
+     * @param random random source
+     * @return cell id
+     */
+    private static int randomPassable(Maze maze, Random random) {
+        int cell;
+        do {
+            cell = random.nextInt(maze.numCells());
+        } while (!maze.isPassable(cell));
+        return cell;
+    }
+
+    /**
+     * Moves a cell to a random passable neighbour.
+     *
+     * @param maze   maze
+     * @param cell   cell id
+     * @param random random source
+     * @return cell id of the neighbour or the cell itself if it has no passable neighbour
+     */
+    private static int step(Maze maze, int cell, Random random) {
+        int exits = maze.exits(cell);
+        if (exits == 0) {
+            return cell;
+        }
+        for (int skip = random.nextInt(Integer.bitCount(exits)); skip > 0; skip--) {
+            exits &= exits - 1;
+        }
+        return maze.neighbour(cell, Field.Direction.values()[Integer.numberOfTrailingZeros(exits)]);
+    }
+}